@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+
+/**
+ * An {@link OpcUaVariable} of an OPC UA <i>Boolean</i> variable which can be
+ * read and written without boxing.
+ */
+public class BooleanOpcUaVariable extends OpcUaVariable implements BooleanValueSupplier {
+  /**
+   * Creates a new variable for an OPC UA <i>Boolean</i> node.
+   *
+   * @param client        The client object to use for communication.
+   * @param nodeId        The node whose value to read or write.
+   * @param cacheDuration The maximum age of the cached value before it will be
+   *                      refetched.
+   */
+  public BooleanOpcUaVariable(OpcUaClient client, NodeId nodeId, Duration cacheDuration) {
+    super(client, nodeId, Boolean.class, cacheDuration);
+  }
+
+  /**
+   * Creates a new variable for an OPC UA <i>Boolean</i> node.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public BooleanOpcUaVariable(OpcUaClient client, NodeId nodeId, CachePolicy cachePolicy) {
+    super(client, nodeId, Boolean.class, cachePolicy);
+  }
+
+  @Override
+  public boolean getAsBoolean() throws ProviderException {
+    return (Boolean) getValue();
+  }
+
+  /**
+   * Writes a new value to the OPC UA variable. See
+   * {@link #applyValue(Object)}.
+   *
+   * @param value The new value.
+   * @throws ProviderException If the communication with the asset failed.
+   */
+  public void applyAsBoolean(boolean value) throws ProviderException {
+    applyValue(value);
+  }
+}
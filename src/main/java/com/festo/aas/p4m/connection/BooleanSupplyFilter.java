@@ -0,0 +1,45 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Map;
+
+/**
+ * A {@link SupplyFilter} which computes a {@code boolean} from primitive supplier
+ * values. The result is only boxed when it is handed to BaSyx.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * property.setSupplyFilter(
+ *     (BooleanSupplyFilter) values -> values.getAsBoolean("door1") && values.getAsBoolean("door2"));
+ * }</pre>
+ */
+@FunctionalInterface
+public interface BooleanSupplyFilter extends SupplyFilter {
+  /**
+   * Computes the property value.
+   *
+   * @param values The supplier values.
+   *
+   * @return The property value.
+   */
+  boolean applyAsBoolean(SupplierValues values);
+
+  @Override
+  default Object filter(Map<String, Object> values) {
+    return applyAsBoolean(SupplierValues.of(values));
+  }
+}
@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Decides how long an {@link OpcUaVariable} serves its cached value and when it
+ * reads the value from the server again.
+ *
+ * <p>
+ * A policy is defined by three ages of the cached value:
+ * <ul>
+ * <li><i>refresh after</i>: Once the value is older, it is read again in the
+ * background while the cached value is still returned.</li>
+ * <li><i>time to live</i>: The age up to which the value is considered
+ * fresh.</li>
+ * <li><i>max staleness</i>: The age up to which the cached value may be
+ * returned at all. Older values are never returned; the read blocks until the
+ * server answered.</li>
+ * </ul>
+ *
+ * <p>
+ * Instances are immutable. Start with one of the factory methods and refine
+ * the policy with the {@code with...} methods:
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * // Re-read hot variables 200 ms before they expire, but serve values up to
+ * // 5 s old if the PLC is slow to answer.
+ * CachePolicy policy = CachePolicy.refreshAhead(Duration.ofSeconds(1), Duration.ofMillis(200))
+ *     .withMaxStaleness(Duration.ofSeconds(5));
+ * }</pre>
+ */
+public final class CachePolicy {
+  private static final CachePolicy NO_CACHE = new CachePolicy(Duration.ZERO, Duration.ZERO, Duration.ZERO);
+
+  private final Duration timeToLive;
+  private final Duration refreshAfter;
+  private final Duration maxStaleness;
+  private final long refreshAfterNanos;
+  private final long maxStalenessNanos;
+
+  private CachePolicy(Duration timeToLive, Duration refreshAfter, Duration maxStaleness) {
+    this.timeToLive = timeToLive;
+    this.refreshAfter = refreshAfter;
+    this.maxStaleness = maxStaleness;
+    this.refreshAfterNanos = toNanos(refreshAfter);
+    this.maxStalenessNanos = toNanos(maxStaleness);
+  }
+
+  /**
+   * A policy which doesn't cache at all. Every read goes to the server.
+   *
+   * @return The policy.
+   */
+  public static CachePolicy noCache() {
+    return NO_CACHE;
+  }
+
+  /**
+   * A policy which serves the cached value for {@code timeToLive} and then
+   * blocks the next read until the value has been fetched from the server. This
+   * is the behavior of {@link OpcUaVariable}'s {@link Duration}-based
+   * constructor.
+   *
+   * @param timeToLive The maximum age of the cached value.
+   *
+   * @return The policy.
+   */
+  public static CachePolicy expireAfter(Duration timeToLive) {
+    checkNotNegative(timeToLive, "timeToLive");
+    return new CachePolicy(timeToLive, timeToLive, timeToLive);
+  }
+
+  /**
+   * A policy which serves a stale value while it is being refreshed in the
+   * background.
+   *
+   * <p>
+   * Within {@code timeToLive}, the cached value is returned. Up to
+   * {@code maxStaleness}, the cached value is still returned immediately, but
+   * triggers a background read. Older values are not returned.
+   *
+   * @param timeToLive   The age up to which the cached value is fresh.
+   * @param maxStaleness The age up to which the cached value may be returned
+   *                     while it is being refreshed. Must not be shorter than
+   *                     {@code timeToLive}.
+   *
+   * @return The policy.
+   */
+  public static CachePolicy staleWhileRevalidate(Duration timeToLive, Duration maxStaleness) {
+    checkNotNegative(timeToLive, "timeToLive");
+    return new CachePolicy(timeToLive, timeToLive, timeToLive).withMaxStaleness(maxStaleness);
+  }
+
+  /**
+   * A policy which reads the value again shortly before it expires, so that
+   * frequently read variables never block on the server.
+   *
+   * <p>
+   * The first read after the value reached an age of
+   * {@code timeToLive - refreshAhead} triggers a background read and still
+   * returns the cached value. Only variables which weren't read in that window
+   * block once the value expired.
+   *
+   * @param timeToLive   The maximum age of the cached value.
+   * @param refreshAhead How long before expiry the background read is
+   *                     triggered. Must not be longer than {@code timeToLive}.
+   *
+   * @return The policy.
+   */
+  public static CachePolicy refreshAhead(Duration timeToLive, Duration refreshAhead) {
+    checkNotNegative(timeToLive, "timeToLive");
+    checkNotNegative(refreshAhead, "refreshAhead");
+    if (refreshAhead.compareTo(timeToLive) > 0) {
+      throw new IllegalArgumentException("refreshAhead must not be longer than timeToLive.");
+    }
+    return new CachePolicy(timeToLive, timeToLive.minus(refreshAhead), timeToLive);
+  }
+
+  /**
+   * Creates a copy of this policy with a different bound on the age of returned
+   * values. Values older than the time to live but younger than
+   * {@code maxStaleness} are returned while they are refreshed in the
+   * background.
+   *
+   * @param maxStaleness The maximum age of any value returned from the cache.
+   *                     Must not be shorter than the time to live.
+   *
+   * @return The new policy.
+   */
+  public CachePolicy withMaxStaleness(Duration maxStaleness) {
+    checkNotNegative(maxStaleness, "maxStaleness");
+    if (maxStaleness.compareTo(timeToLive) < 0) {
+      throw new IllegalArgumentException("maxStaleness must not be shorter than timeToLive.");
+    }
+    return new CachePolicy(timeToLive, refreshAfter, maxStaleness);
+  }
+
+  /**
+   * Gets the age up to which the cached value is considered fresh.
+   *
+   * @return The time to live.
+   */
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Gets the age after which the value is refreshed in the background.
+   *
+   * @return The refresh age.
+   */
+  public Duration getRefreshAfter() {
+    return refreshAfter;
+  }
+
+  /**
+   * Gets the maximum age of any value returned from the cache.
+   *
+   * @return The maximum staleness.
+   */
+  public Duration getMaxStaleness() {
+    return maxStaleness;
+  }
+
+  /**
+   * Whether a cached value of the given age may be returned.
+   */
+  boolean isUsable(long ageNanos) {
+    return ageNanos < maxStalenessNanos;
+  }
+
+  /**
+   * Whether a cached value of the given age should be refreshed in the
+   * background. Only meaningful if the value {@link #isUsable(long) is usable}.
+   */
+  boolean isRefreshDue(long ageNanos) {
+    return refreshAfterNanos < maxStalenessNanos && ageNanos >= refreshAfterNanos;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CachePolicy)) {
+      return false;
+    }
+    CachePolicy other = (CachePolicy) obj;
+    return timeToLive.equals(other.timeToLive) && refreshAfter.equals(other.refreshAfter)
+        && maxStaleness.equals(other.maxStaleness);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(timeToLive, refreshAfter, maxStaleness);
+  }
+
+  @Override
+  public String toString() {
+    return "CachePolicy [timeToLive=" + timeToLive + ", refreshAfter=" + refreshAfter + ", maxStaleness="
+        + maxStaleness + "]";
+  }
+
+  private static void checkNotNegative(Duration duration, String name) {
+    Objects.requireNonNull(duration);
+    if (duration.isNegative()) {
+      throw new IllegalArgumentException(name + " must not be negative.");
+    }
+  }
+
+  private static long toNanos(Duration duration) {
+    try {
+      return duration.toNanos();
+    } catch (ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+}
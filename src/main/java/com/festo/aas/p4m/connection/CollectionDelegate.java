@@ -14,14 +14,23 @@
 
 package com.festo.aas.p4m.connection;
 
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.eclipse.basyx.submodel.metamodel.api.submodelelement.ISubmodelElement;
+import org.eclipse.basyx.submodel.metamodel.facade.submodelelement.SubmodelElementFacadeFactory;
 import org.eclipse.basyx.submodel.metamodel.map.submodelelement.SubmodelElementCollection;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
 import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaHandler;
 
 /**
@@ -32,16 +41,114 @@ import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaHandler;
  * This class performs some additional behind-the-scenes conversions, to enable
  * the user to get/set a simple {@code Collection<ISubmodelElement} as the SMC's
  * value.
+ *
+ * <p>
+ * A getter set through {@link #setGetHandler(Supplier)} is converted into a
+ * map keyed by idShort on every read. For large collections, the delegate can
+ * instead keep such a map itself: Once elements are added through
+ * {@link #setElements(Collection)} or {@link #putElement(ISubmodelElement)},
+ * reads return that map without copying anything. Each change replaces the map
+ * as a whole, so a read sees either all or none of it. In turn, changing a
+ * single element copies the whole map, which takes time proportional to the
+ * number of elements. This suits collections which are read far more often than
+ * they change. The elements keep the
+ * order in which they were first added, so pages cut from them are stable.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * CollectionDelegate parts = CollectionDelegate.installOn(partList);
+ * parts.setElements(loadParts());
+ * parts.setSetHandler(parts::setElements);
+ * // Later, when a single part changes:
+ * parts.putElement(updatedPart);
+ * }</pre>
+ *
+ * <h2>Accessing single elements</h2>
+ *
+ * <p>
+ * When AAS clients access a single element of the collection, BaSyx normally
+ * gets the whole collection and picks the element from it. Handlers for single
+ * elements avoid this:
+ * <ul>
+ * <li>{@link #setElementGetHandler(Function)} looks up one element by
+ * idShort.</li>
+ * <li>{@link #setElementPutHandler(Consumer)} adds or replaces one
+ * element.</li>
+ * <li>{@link #setElementDeleteHandler(Consumer)} removes one element.</li>
+ * <li>{@link #setPageHandler(CollectionPageHandler)} serves a slice of the
+ * collection, see {@link #getPage(int, int)} and
+ * {@link SubmodelWrapper#getSubmodelElements(int, int, String...)}.</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * CollectionDelegate orders = CollectionDelegate.installOn(orderList);
+ * orders.setGetHandler(() -> toElements(orderRepository.findAll()));
+ * orders.setElementGetHandler(id -> toElement(orderRepository.find(id)));
+ * orders.setPageHandler((offset, limit) -> toElements(orderRepository.find(offset, limit)));
+ * }</pre>
  */
 public class CollectionDelegate extends ValueDelegate<Collection<ISubmodelElement>> {
+  /**
+   * The key of the page handler in the lambda map. BaSyx ignores it.
+   */
+  static final String PAGE_SUFFIX = "page";
+
+  private final Object elementsLock = new Object();
+  // Never modified, only replaced while holding elementsLock.
+  private volatile Map<String, ISubmodelElement> elements = Collections.emptyMap();
+  private final Map<String, ISubmodelElement> elementView = new ElementView();
+  private final Supplier<Map<String, ISubmodelElement>> elementViewSupplier = () -> elements;
+  private Supplier<Map<String, ISubmodelElement>> collectionGetter;
+  private Function<String, ISubmodelElement> elementGetHandler;
+
+  /**
+   * Creates a delegate which isn't installed on any collection yet.
+   *
+   * <p>
+   * Prefer {@link #installOn(SubmodelElementCollection)}, which also installs
+   * the delegate.
+   */
+  public CollectionDelegate() {
+    super(false);
+    installGetter(() -> {
+      throw new UnsupportedOperationException();
+    });
+    Consumer<Map<String, ISubmodelElement>> defaultSetHandler = (map) -> {
+      throw new UnsupportedOperationException();
+    };
+    lambdaMap.put(VABLambdaHandler.VALUE_SET_SUFFIX, defaultSetHandler);
+  }
+
+  /**
+   * Create and install a new {@code CollectionDelegate} on a submodel element
+   * collection.
+   *
+   * <p>
+   * Same as {@link ValueDelegate#installOn(SubmodelElementCollection)}, but
+   * gives access to the methods specific to collections.
+   *
+   * @param submodelElementCollection The submodel element collection whose
+   *                                  content must be dynamically derived.
+   * @return The new delegate.
+   */
+  public static CollectionDelegate installOn(SubmodelElementCollection submodelElementCollection) {
+    CollectionDelegate delegate = new CollectionDelegate();
+    submodelElementCollection.put(Property.VALUE, delegate.lambdaMap);
+    return delegate;
+  }
+
   @Override
   public void setGetHandler(Supplier<Collection<ISubmodelElement>> getHandler) {
     Supplier<Map<String, ISubmodelElement>> supplier = () -> {
       Collection<ISubmodelElement> collection = getHandler.get();
-      return collection.stream().collect(Collectors.toMap(sme -> sme.getIdShort(), sme -> sme));
+      // Keeps the collection's order, so pages cut from it are stable.
+      return collection.stream().collect(Collectors.toMap(sme -> sme.getIdShort(), sme -> sme, (a, b) -> {
+        throw new IllegalStateException("Duplicate idShort " + a.getIdShort());
+      }, LinkedHashMap::new));
     };
 
-    lambdaMap.put(VABLambdaHandler.VALUE_GET_SUFFIX, supplier);
+    installGetter(supplier);
   }
 
   @Override
@@ -52,4 +159,289 @@ public class CollectionDelegate extends ValueDelegate<Collection<ISubmodelElemen
 
     lambdaMap.put(VABLambdaHandler.VALUE_SET_SUFFIX, consumer);
   }
+
+  /**
+   * Replaces all elements held by the delegate and serves them on reads,
+   * replacing any getter.
+   *
+   * <p>
+   * The elements are replaced at once, so concurrent reads see either the old
+   * or the new contents. They are served in the order of {@code newElements}.
+   * This can also be used as a set handler.
+   *
+   * @param  newElements           The new contents of the collection.
+   *
+   * @throws IllegalStateException If two elements have the same idShort.
+   */
+  public void setElements(Collection<? extends ISubmodelElement> newElements) {
+    Map<String, ISubmodelElement> newElementsById = newElements.stream()
+        .collect(Collectors.toMap(ISubmodelElement::getIdShort, sme -> sme, (a, b) -> {
+          throw new IllegalStateException("Duplicate idShort " + a.getIdShort());
+        }, LinkedHashMap::new));
+    synchronized (elementsLock) {
+      elements = Collections.unmodifiableMap(newElementsById);
+    }
+    installGetter(elementViewSupplier);
+  }
+
+  /**
+   * Adds an element to those held by the delegate, replacing any element with
+   * the same idShort. The held elements are served on reads, replacing any
+   * getter.
+   *
+   * <p>
+   * A new element is served last, a replaced one keeps its position. This
+   * copies the held elements, so it takes O(n) time for n held elements. Prefer
+   * {@link #setElements(Collection)} for bulk changes.
+   *
+   * @param element The element to add.
+   */
+  public void putElement(ISubmodelElement element) {
+    synchronized (elementsLock) {
+      Map<String, ISubmodelElement> copy = new LinkedHashMap<>(elements);
+      copy.put(element.getIdShort(), element);
+      elements = Collections.unmodifiableMap(copy);
+    }
+    installGetter(elementViewSupplier);
+  }
+
+  /**
+   * Removes an element from those held by the delegate.
+   *
+   * <p>
+   * Like {@link #putElement(ISubmodelElement)}, this copies the held elements
+   * and takes O(n) time for n held elements.
+   *
+   * @param idShort The idShort of the element to remove.
+   * @return The removed element, or {@code null} if there was none.
+   */
+  public ISubmodelElement removeElement(String idShort) {
+    synchronized (elementsLock) {
+      if (!elements.containsKey(idShort)) {
+        return null;
+      }
+      Map<String, ISubmodelElement> copy = new LinkedHashMap<>(elements);
+      ISubmodelElement removed = copy.remove(idShort);
+      elements = Collections.unmodifiableMap(copy);
+      return removed;
+    }
+  }
+
+  /**
+   * Gets the elements held by the delegate.
+   *
+   * @return A live, read-only view of the elements, keyed by idShort.
+   */
+  public Map<String, ISubmodelElement> getElements() {
+    return elementView;
+  }
+
+  /**
+   * Sets a getter for single elements of the collection.
+   *
+   * <p>
+   * It's used whenever a single element is accessed, instead of getting the
+   * whole collection through the getter set by
+   * {@link #setGetHandler(Supplier)}.
+   *
+   * @param elementGetHandler A method looking up an element by idShort,
+   *                          returning {@code null} if there is none.
+   */
+  public void setElementGetHandler(Function<String, ISubmodelElement> elementGetHandler) {
+    this.elementGetHandler = Objects.requireNonNull(elementGetHandler);
+    installGetter(collectionGetter);
+  }
+
+  /**
+   * Sets a handler for adding or replacing single elements of the collection.
+   *
+   * @param elementPutHandler A method storing an element, replacing any element
+   *                          with the same idShort.
+   */
+  public void setElementPutHandler(Consumer<ISubmodelElement> elementPutHandler) {
+    lambdaMap.put(VABLambdaHandler.VALUE_INSERT_SUFFIX, new ElementInserter(elementPutHandler));
+  }
+
+  /**
+   * Sets a handler for removing single elements of the collection.
+   *
+   * @param elementDeleteHandler A method removing an element by idShort.
+   */
+  public void setElementDeleteHandler(Consumer<String> elementDeleteHandler) {
+    lambdaMap.put(VABLambdaHandler.VALUE_REMOVEKEY_SUFFIX, elementDeleteHandler);
+  }
+
+  /**
+   * Sets a handler serving slices of the collection.
+   *
+   * <p>
+   * Without a page handler, slices are cut from the whole collection.
+   *
+   * @param pageHandler A method getting a slice of the collection.
+   */
+  public void setPageHandler(CollectionPageHandler pageHandler) {
+    lambdaMap.put(PAGE_SUFFIX, Objects.requireNonNull(pageHandler));
+  }
+
+  /**
+   * Gets a slice of the collection's elements.
+   *
+   * <p>
+   * Slices are cut in the order in which the elements are served, so
+   * consecutive pages neither skip nor repeat elements while the collection
+   * is unchanged.
+   *
+   * @param  offset The number of elements to skip.
+   * @param  limit  The maximum number of elements to return.
+   *
+   * @return        The elements of the slice.
+   */
+  public Collection<ISubmodelElement> getPage(int offset, int limit) {
+    return getPage(lambdaMap, offset, limit);
+  }
+
+  /**
+   * Gets a slice of a collection's elements, given the collection's value.
+   *
+   * @param  value  The value of a submodel element collection, which may or may
+   *                not be backed by a {@code CollectionDelegate}.
+   * @param  offset The number of elements to skip.
+   * @param  limit  The maximum number of elements to return.
+   *
+   * @return        The elements of the slice.
+   */
+  @SuppressWarnings("unchecked")
+  static Collection<ISubmodelElement> getPage(Object value, int offset, int limit) {
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("offset and limit must not be negative.");
+    }
+
+    Object contents = value;
+    if (value instanceof Map) {
+      Map<String, Object> lambdas = (Map<String, Object>) value;
+      if (lambdas.get(PAGE_SUFFIX) instanceof CollectionPageHandler) {
+        return ((CollectionPageHandler) lambdas.get(PAGE_SUFFIX)).getPage(offset, limit);
+      }
+      if (lambdas.get(VABLambdaHandler.VALUE_GET_SUFFIX) instanceof Supplier) {
+        contents = ((Supplier<?>) lambdas.get(VABLambdaHandler.VALUE_GET_SUFFIX)).get();
+      }
+    }
+
+    Collection<?> elements = contents instanceof Map ? ((Map<?, ?>) contents).values() : (Collection<?>) contents;
+    return elements.stream().skip(offset).limit(limit).map(CollectionDelegate::toSubmodelElement)
+        .collect(Collectors.toList());
+  }
+
+  private void installGetter(Supplier<Map<String, ISubmodelElement>> getter) {
+    collectionGetter = getter;
+    Function<String, ISubmodelElement> elementGetter = elementGetHandler;
+    if (elementGetter == null || getter == elementViewSupplier) {
+      // The held elements can already be looked up without getting the whole collection.
+      lambdaMap.put(VABLambdaHandler.VALUE_GET_SUFFIX, getter);
+    } else {
+      Supplier<Map<String, ISubmodelElement>> lazyGetter = () -> new LazyElementMap(elementGetter, getter);
+      lambdaMap.put(VABLambdaHandler.VALUE_GET_SUFFIX, lazyGetter);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ISubmodelElement toSubmodelElement(Object element) {
+    if (element instanceof ISubmodelElement) {
+      return (ISubmodelElement) element;
+    }
+    return SubmodelElementFacadeFactory.createSubmodelElement((Map<String, Object>) element);
+  }
+
+  /**
+   * A live, read-only view of whichever map the delegate currently holds.
+   */
+  private final class ElementView extends AbstractMap<String, ISubmodelElement> {
+    @Override
+    public ISubmodelElement get(Object key) {
+      return elements.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return elements.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return elements.size();
+    }
+
+    @Override
+    public Set<Entry<String, ISubmodelElement>> entrySet() {
+      return elements.entrySet();
+    }
+  }
+
+  /**
+   * The collection as seen by BaSyx when single elements can be looked up.
+   *
+   * <p>
+   * Looking up an element by idShort only invokes the element getter. The whole
+   * collection is only got when BaSyx iterates over the map.
+   */
+  private static final class LazyElementMap extends AbstractMap<String, ISubmodelElement> {
+    private final Function<String, ISubmodelElement> elementGetter;
+    private final Supplier<Map<String, ISubmodelElement>> collectionGetter;
+    private Map<String, ISubmodelElement> collection;
+    // BaSyx checks containsKey before calling get, so remember the last lookup.
+    private Object lastKey;
+    private ISubmodelElement lastElement;
+
+    LazyElementMap(Function<String, ISubmodelElement> elementGetter,
+        Supplier<Map<String, ISubmodelElement>> collectionGetter) {
+      this.elementGetter = elementGetter;
+      this.collectionGetter = collectionGetter;
+    }
+
+    @Override
+    public ISubmodelElement get(Object key) {
+      if (collection != null) {
+        return collection.get(key);
+      }
+      if (!Objects.equals(key, lastKey) && key instanceof String) {
+        lastElement = elementGetter.apply((String) key);
+        lastKey = key;
+      }
+      return Objects.equals(key, lastKey) ? lastElement : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, ISubmodelElement>> entrySet() {
+      if (collection == null) {
+        collection = collectionGetter.get();
+      }
+      return collection.entrySet();
+    }
+  }
+
+  /**
+   * Adapts an element put handler to both ways BaSyx invokes inserters.
+   */
+  private static final class ElementInserter implements Consumer<Object>, BiConsumer<String, Object> {
+    private final Consumer<ISubmodelElement> elementPutHandler;
+
+    ElementInserter(Consumer<ISubmodelElement> elementPutHandler) {
+      this.elementPutHandler = Objects.requireNonNull(elementPutHandler);
+    }
+
+    @Override
+    public void accept(Object element) {
+      elementPutHandler.accept(toSubmodelElement(element));
+    }
+
+    @Override
+    public void accept(String idShort, Object element) {
+      elementPutHandler.accept(toSubmodelElement(element));
+    }
+  }
 }
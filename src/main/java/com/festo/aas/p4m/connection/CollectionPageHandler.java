@@ -0,0 +1,40 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Collection;
+
+import org.eclipse.basyx.submodel.metamodel.api.submodelelement.ISubmodelElement;
+
+/**
+ * Serves a slice of a dynamic submodel element collection.
+ *
+ * <p>
+ * Installed through {@link CollectionDelegate#setPageHandler(CollectionPageHandler)}.
+ * Implementations should fetch only the requested slice from their backing
+ * store.
+ */
+@FunctionalInterface
+public interface CollectionPageHandler {
+  /**
+   * Gets a slice of the collection's elements.
+   *
+   * @param  offset The number of elements to skip.
+   * @param  limit  The maximum number of elements to return.
+   *
+   * @return        The elements of the slice, in the collection's order.
+   */
+  Collection<ISubmodelElement> getPage(int offset, int limit);
+}
@@ -14,12 +14,31 @@
 
 package com.festo.aas.p4m.connection;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
 import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.valuetype.ValueType;
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
 
 /**
  * This subclass of Property can be used as a drop-in replacement when the
@@ -45,12 +64,54 @@ import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.prop
  * If more than one {@link PropertyValueSupplier} is added, a <i>supply
  * filter</i> must be set, as well. The same is true for
  * {@link PropertyValueConsumer} and the <i>consume filter</i>.
+ *
+ * <p>
+ * Multiple suppliers are fetched concurrently: {@link OpcUaVariable}s are read
+ * with one batched read per {@link OpcUaClient}, all other suppliers are
+ * called individually, and all of these reads run in parallel. Reading the
+ * property therefore takes as long as the slowest source, limited by the
+ * {@link #setFetchTimeout(Duration) fetch timeout}.
+ *
+ * <p>
+ * The property is safe for concurrent use. Reads don't block each other or
+ * writes; concurrent reads of the same {@link OpcUaVariable} are coalesced by
+ * the variable. Writes are applied one after another in the order in which
+ * they arrived. Suppliers, consumers and filters can be changed at any time;
+ * reads and writes which are already running keep using the previous ones.
+ *
+ * <p>
+ * Reading a property whose suppliers are all served from a cache reuses a
+ * per-thread buffer and view for the supplier values, so the read itself
+ * allocates nothing. Boxing done by the supplier or filter, a mutable copy for
+ * filters which {@link SupplyFilter#mutatesValues() modify their input}, and a
+ * new memo when a memoized result changes are allocated as needed. If any
+ * supplier must be fetched from its source, the values are collected in a new
+ * array together with the fetch tasks.
  */
 public class ConnectedProperty extends Property {
-  private final Map<String, PropertyValueSupplier> suppliers = new HashMap<>();
-  private final Map<String, PropertyValueConsumer> consumers = new HashMap<>();
-  private SupplyFilter supplyFilter;
-  private ConsumeFilter consumeFilter;
+  /**
+   * The default time after which fetching the supplier values is aborted.
+   */
+  public static final Duration DEFAULT_FETCH_TIMEOUT = Duration.ofSeconds(10);
+
+  private static final ThreadLocal<Map<OpcUaVariable, Object>> prefetchedValues = ThreadLocal
+      .withInitial(Collections::emptyMap);
+  private static final AtomicLong nextLockOrder = new AtomicLong();
+  private static final ThreadLocal<ValueBuffer> valueBuffers = ThreadLocal.withInitial(ValueBuffer::new);
+
+  // Copy-on-write: replaced as a whole when a supplier or consumer is added.
+  private volatile ConnectionTable<PropertyValueSupplier> suppliers = ConnectionTable.empty();
+  private volatile ConnectionTable<PropertyValueConsumer> consumers = ConnectionTable.empty();
+  private volatile SupplyFilter supplyFilter;
+  private volatile ConsumeFilter consumeFilter;
+  private volatile boolean memoizeSupplyFilter;
+  private volatile Memo memo;
+  private volatile Duration fetchTimeout = DEFAULT_FETCH_TIMEOUT;
+  private volatile Executor fetchExecutor = SharedExecutors.blockingExecutor();
+
+  private final ReentrantLock writeLock = new ReentrantLock(true);
+  private final long lockOrder = nextLockOrder.getAndIncrement();
+  private final ValueChangeNotifier notifier = new ValueChangeNotifier(this);
 
   /**
    * Create a new empty ConnectedProperty.
@@ -73,44 +134,144 @@ public class ConnectedProperty extends Property {
   }
 
   @Override
-  public synchronized Object getValue() {
-    if (suppliers.size() == 0) {
-      throw new IllegalStateException("Must specify at least one connection.");
-    }
+  public Object getValue() {
+    return getValue(prefetchedValues.get());
+  }
 
-    if (suppliers.size() > 1 && supplyFilter == null) {
-      throw new IllegalStateException("Must provide a transformer function when adding multiple connections.");
-    }
+  /**
+   * Gets the value, using already fetched values for some OPC UA variables
+   * instead of reading them again.
+   *
+   * @param  prefetched Values of OPC UA variables which are known to be
+   *                    current. Suppliers missing from this map are read as
+   *                    usual.
+   *
+   * @return            The property value.
+   */
+  Object getValue(Map<OpcUaVariable, Object> prefetched) {
+    Object newValue = computeValue(prefetched);
+    notifier.publish(newValue);
+    return newValue;
+  }
 
-    Map<String, Object> newValues = fetchConnectedValues();
+  /**
+   * Takes the write locks of several properties, so that writes through
+   * {@link #setValue(Object)} can't interleave with a write spanning all of them.
+   * The locks are taken in a fixed global order, so two such writes can't
+   * deadlock.
+   *
+   * @param  properties The properties to lock.
+   *
+   * @return            Releases the locks.
+   */
+  static Runnable lockForWrite(Collection<ConnectedProperty> properties) {
+    List<ConnectedProperty> ordered = new ArrayList<>(new LinkedHashSet<>(properties));
+    ordered.sort(Comparator.comparingLong(property -> property.lockOrder));
+    for (ConnectedProperty property : ordered) {
+      property.writeLock.lock();
+    }
+    return () -> {
+      for (int i = ordered.size() - 1; i >= 0; i--) {
+        ordered.get(i).writeLock.unlock();
+      }
+    };
+  }
 
-    Object newValue;
-    if (supplyFilter == null) {
-      newValue = newValues.values().iterator().next();
-    } else {
-      newValue = supplyFilter.filter(newValues);
+  /**
+   * Runs an action during which {@link #getValue()} of every connected property
+   * uses the given values on the current thread, instead of reading these OPC
+   * UA variables again.
+   *
+   * @param  prefetched Values of OPC UA variables which are known to be
+   *                    current.
+   * @param  action     The action to run.
+   *
+   * @return            The action's result.
+   */
+  static <T> T withPrefetchedValues(Map<OpcUaVariable, Object> prefetched, Supplier<T> action) {
+    Map<OpcUaVariable, Object> previous = prefetchedValues.get();
+    prefetchedValues.set(prefetched);
+    try {
+      return action.get();
+    } finally {
+      if (previous.isEmpty()) {
+        prefetchedValues.remove();
+      } else {
+        prefetchedValues.set(previous);
+      }
     }
+  }
 
-    return newValue;
+  /**
+   * Gets all suppliers which are OPC UA variables.
+   *
+   * @return The OPC UA variables this property reads from.
+   */
+  List<OpcUaVariable> getOpcUaVariables() {
+    ConnectionTable<PropertyValueSupplier> currentSuppliers = suppliers;
+    List<OpcUaVariable> variables = new ArrayList<>(currentSuppliers.size());
+    for (int i = 0; i < currentSuppliers.size(); i++) {
+      if (currentSuppliers.get(i) instanceof OpcUaVariable) {
+        variables.add((OpcUaVariable) currentSuppliers.get(i));
+      }
+    }
+    return variables;
   }
 
   @Override
-  public synchronized void setValue(Object value) {
-    if (consumers.size() == 0) {
-      throw new IllegalStateException("Must specify at least one connection.");
+  public void setValue(Object value) {
+    writeLock.lock();
+    try {
+      applyValue(value);
+      notifier.publish(value);
+    } finally {
+      writeLock.unlock();
     }
+  }
 
-    if (consumers.size() > 1 && consumeFilter == null) {
-      throw new IllegalStateException("Must provide a transformer function when adding multiple connections.");
-    }
+  /**
+   * Adds a listener which is notified whenever the value of this property
+   * changes. Changes are detected when the property is read or written.
+   *
+   * <p>
+   * The listener is called on a shared background thread pool and may lag
+   * behind by up to {@value ValueChangeNotifier#DEFAULT_QUEUE_CAPACITY}
+   * changes before changes are merged.
+   *
+   * @param listener The listener to add.
+   */
+  public void addValueChangeListener(ValueChangeListener listener) {
+    addValueChangeListener(listener, SharedExecutors.blockingExecutor(), ValueChangeNotifier.DEFAULT_QUEUE_CAPACITY);
+  }
 
-    if (consumeFilter == null) {
-      consumers.values().iterator().next().applyValue(value);
-    } else {
-      Map<String, Object> valuesByConsumer = new HashMap<>(consumers.size(), 1);
-      consumeFilter.filter(value, valuesByConsumer);
-      valuesByConsumer.forEach((name, val) -> applyValueToConsumer(name, val));
-    }
+  /**
+   * Adds a listener which is notified whenever the value of this property
+   * changes.
+   *
+   * <p>
+   * Changes which the listener hasn't received yet are queued. If more than
+   * {@code queueCapacity} changes are queued, the oldest ones are merged, so the
+   * listener always receives the latest value but may miss intermediate ones.
+   *
+   * @param listener      The listener to add.
+   * @param executor      The executor on which the listener is called.
+   * @param queueCapacity The maximum number of undelivered changes.
+   */
+  public void addValueChangeListener(ValueChangeListener listener, Executor executor, int queueCapacity) {
+    notifier.addListener(listener, executor, queueCapacity);
+  }
+
+  /**
+   * Removes a listener added with
+   * {@link #addValueChangeListener(ValueChangeListener)}. Changes which are
+   * already queued may still be delivered.
+   *
+   * @param listener The listener to remove.
+   *
+   * @return Whether the listener was registered.
+   */
+  public boolean removeValueChangeListener(ValueChangeListener listener) {
+    return notifier.removeListener(listener);
   }
 
   /**
@@ -124,13 +285,13 @@ public class ConnectedProperty extends Property {
    *                 added to this property.
    * @param supplier The value supplier to add.
    */
-  public void addPropertyValueSupplier(String name, PropertyValueSupplier supplier) {
+  public synchronized void addPropertyValueSupplier(String name, PropertyValueSupplier supplier) {
     Objects.requireNonNull(name);
-    if (suppliers.containsKey(name)) {
+    if (suppliers.contains(name)) {
       throw new IllegalArgumentException("A PropertyValueSupplier with that name already exists.");
     }
 
-    suppliers.put(name, supplier);
+    suppliers = suppliers.with(name, supplier);
   }
 
   /**
@@ -144,13 +305,13 @@ public class ConnectedProperty extends Property {
    *                 added to this property.
    * @param consumer The value consumer to add.
    */
-  public void addPropertyValueConsumer(String name, PropertyValueConsumer consumer) {
+  public synchronized void addPropertyValueConsumer(String name, PropertyValueConsumer consumer) {
     Objects.requireNonNull(name);
-    if (suppliers.containsKey(name)) {
+    if (consumers.contains(name)) {
       throw new IllegalArgumentException("A PropertyValueConsumer with that name already exists.");
     }
 
-    consumers.put(name, consumer);
+    consumers = consumers.with(name, consumer);
   }
 
   /**
@@ -163,6 +324,25 @@ public class ConnectedProperty extends Property {
     supplyFilter = filter;
   }
 
+  /**
+   * Enables or disables memoization of the supply filter's result. If enabled,
+   * the filter is skipped and its previous result is returned when every
+   * supplier returned the same or an equal value as during the previous
+   * evaluation. This is typically the case when all suppliers are
+   * {@link OpcUaVariable}s served from their cache.
+   *
+   * <p>
+   * Only filters whose {@link SupplyFilter#isPure()} returns {@code true} are
+   * memoized, see {@link SupplyFilter#pure(SupplyFilter)}. Memoization is
+   * disabled by default.
+   *
+   * @param memoize Whether to memoize the supply filter's result.
+   */
+  public void setMemoizeSupplyFilter(boolean memoize) {
+    memoizeSupplyFilter = memoize;
+    memo = null;
+  }
+
   /**
    * Sets a filter function to transform this property's value into consumer
    * values.
@@ -173,27 +353,422 @@ public class ConnectedProperty extends Property {
     consumeFilter = filter;
   }
 
+  /**
+   * Sets the overall deadline for fetching the values of all suppliers. If not
+   * all values have arrived in time, reading this property fails with a
+   * {@link ProviderException}. Defaults to {@link #DEFAULT_FETCH_TIMEOUT}.
+   *
+   * <p>
+   * Reads which run on the reading thread, i.e. a single supplier or a read
+   * the fetch executor ran on the caller, are interrupted at the deadline. A
+   * supplier which ignores interrupts delays the failure until it returns.
+   *
+   * @param timeout The maximum time to wait for the suppliers.
+   */
+  public void setFetchTimeout(Duration timeout) {
+    if (timeout.isNegative() || timeout.isZero()) {
+      throw new IllegalArgumentException("timeout must be positive.");
+    }
+    fetchTimeout = timeout;
+  }
+
+  /**
+   * Sets the executor on which suppliers are fetched when their values aren't
+   * cached and more than one read is needed. A single read runs on the reading
+   * thread. Defaults to a shared, bounded pool of daemon threads. Reads which
+   * exceed the fetch timeout are interrupted.
+   *
+   * @param executor The executor for fetching supplier values. Suppliers block
+   *                 on I/O, so it shouldn't be a fixed-size pool shared with
+   *                 other work.
+   */
+  public void setFetchExecutor(Executor executor) {
+    fetchExecutor = Objects.requireNonNull(executor);
+  }
+
   private void initializeHandlers() {
     ValueDelegate<Object> delegate = ValueDelegate.installOn(this);
     delegate.setGetHandler(this::getValue);
     delegate.setSetHandler(this::setValue);
   }
 
-  private Map<String, Object> fetchConnectedValues() {
-    Map<String, Object> valuesBySupplier = new HashMap<>();
+  private Object computeValue(Map<OpcUaVariable, Object> prefetched) {
+    ConnectionTable<PropertyValueSupplier> currentSuppliers = suppliers;
+    SupplyFilter filter = supplyFilter;
+    if (currentSuppliers.size() == 0) {
+      throw new IllegalStateException("Must specify at least one connection.");
+    }
+
+    if (currentSuppliers.size() > 1 && filter == null) {
+      throw new IllegalStateException("Must provide a transformer function when adding multiple connections.");
+    }
+
+    if (filter == null) {
+      // Single supplier without a filter: No need to collect anything.
+      PropertyValueSupplier supplier = currentSuppliers.get(0);
+      return prefetched.containsKey(supplier) ? prefetched.get(supplier) : fetchValue(supplier);
+    }
+
+    ValueBuffer buffer = valueBuffers.get();
+    if (buffer.inUse) {
+      // A supplier or filter reads another property on this thread.
+      buffer = new ValueBuffer();
+    }
+    buffer.acquire(currentSuppliers.size());
+    try {
+      Object[] newValues = fetchConnectedValues(currentSuppliers, prefetched, buffer.values);
+      buffer.view.reset(currentSuppliers, newValues);
+      if (!memoizeSupplyFilter || !filter.isPure()) {
+        return applyFilter(filter, buffer.view);
+      }
 
-    for (Map.Entry<String, PropertyValueSupplier> s : suppliers.entrySet()) {
-      valuesBySupplier.put(s.getKey(), s.getValue().getValue());
+      Memo lastMemo = memo;
+      if (lastMemo != null && lastMemo.matches(currentSuppliers, filter, newValues)) {
+        return lastMemo.result;
+      }
+
+      Object newValue = applyFilter(filter, buffer.view);
+      memo = new Memo(currentSuppliers, filter, Arrays.copyOf(newValues, currentSuppliers.size()), newValue);
+      return newValue;
+    } finally {
+      buffer.release(currentSuppliers.size());
     }
+  }
 
-    return valuesBySupplier;
+  private static Object applyFilter(SupplyFilter filter, IndexedValueMap view) {
+    return filter.filter(filter.mutatesValues() ? new HashMap<>(view) : view);
   }
 
-  private void applyValueToConsumer(String name, Object value) {
-    if (!consumers.containsKey(name)) {
-      throw new IllegalArgumentException("'" + name + "' is not a known PropertyValueConsumer.");
+  private void applyValue(Object value) {
+    Map<PropertyValueConsumer, Object> valuesByConsumer = mapToConsumers(value);
+    if (valuesByConsumer.size() == 1) {
+      Map.Entry<PropertyValueConsumer, Object> entry = valuesByConsumer.entrySet().iterator().next();
+      entry.getKey().applyValue(entry.getValue());
+    } else {
+      applyValuesToConsumers(valuesByConsumer);
     }
+  }
 
-    consumers.get(name).applyValue(value);
+  /**
+   * Determines the values to apply to each consumer for a new property value,
+   * without applying them.
+   *
+   * @param  value The new property value.
+   *
+   * @return       The consumers to apply values to, mapped to their values.
+   */
+  Map<PropertyValueConsumer, Object> mapToConsumers(Object value) {
+    ConnectionTable<PropertyValueConsumer> currentConsumers = consumers;
+    ConsumeFilter filter = consumeFilter;
+    if (currentConsumers.size() == 0) {
+      throw new IllegalStateException("Must specify at least one connection.");
+    }
+
+    if (currentConsumers.size() > 1 && filter == null) {
+      throw new IllegalStateException("Must provide a transformer function when adding multiple connections.");
+    }
+
+    if (filter == null) {
+      return Collections.singletonMap(currentConsumers.get(0), value);
+    }
+
+    Map<String, Object> valuesByName = new HashMap<>(currentConsumers.size() * 2);
+    filter.filter(value, valuesByName);
+    for (String name : valuesByName.keySet()) {
+      if (!currentConsumers.contains(name)) {
+        throw new IllegalArgumentException("'" + name + "' is not a known PropertyValueConsumer.");
+      }
+    }
+
+    Map<PropertyValueConsumer, Object> valuesByConsumer = new LinkedHashMap<>(valuesByName.size() * 2);
+    for (Map.Entry<String, Object> entry : valuesByName.entrySet()) {
+      valuesByConsumer.put(currentConsumers.get(currentConsumers.indexOf(entry.getKey())), entry.getValue());
+    }
+    return valuesByConsumer;
+  }
+
+  /**
+   * Notifies listeners about a value which was applied to the consumers from
+   * outside of {@link #setValue(Object)}.
+   *
+   * @param value The applied property value.
+   */
+  void valueApplied(Object value) {
+    notifier.publish(value);
+  }
+
+  /**
+   * Fetches the values of all suppliers, indexed like the supplier table.
+   *
+   * <p>
+   * OPC UA variables which were prefetched or can be served from their cache are
+   * collected in {@code buffer}, which is returned if that suffices. Only if
+   * something must be fetched from its source, the values are moved to a new
+   * array, as reads abandoned after the timeout may still write to it, and the
+   * remaining reads are grouped and run in parallel.
+   */
+  private Object[] fetchConnectedValues(ConnectionTable<PropertyValueSupplier> suppliers,
+      Map<OpcUaVariable, Object> prefetched, Object[] buffer) {
+    Object[] values = buffer;
+    boolean complete = true;
+    for (int i = 0; i < suppliers.size(); i++) {
+      PropertyValueSupplier supplier = suppliers.get(i);
+      if (prefetched.containsKey(supplier)) {
+        values[i] = prefetched.get(supplier);
+      } else {
+        values[i] = supplier instanceof OpcUaVariable ? ((OpcUaVariable) supplier).peekValue()
+            : OpcUaVariable.NOT_CACHED;
+      }
+      complete &= values[i] != OpcUaVariable.NOT_CACHED;
+    }
+
+    if (!complete) {
+      values = Arrays.copyOf(buffer, suppliers.size());
+      fetchMissingValues(suppliers, values);
+    }
+    return values;
+  }
+
+  private void fetchMissingValues(ConnectionTable<PropertyValueSupplier> suppliers, Object[] values) {
+    List<Runnable> reads = new ArrayList<>();
+    Map<OpcUaClient, List<Integer>> variablesByClient = new HashMap<>();
+
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != OpcUaVariable.NOT_CACHED) {
+        continue;
+      }
+
+      PropertyValueSupplier supplier = suppliers.get(i);
+      if (supplier instanceof OpcUaVariable) {
+        // OPC UA variables are collected and read in as few batches as possible below.
+        OpcUaVariable variable = (OpcUaVariable) supplier;
+        variablesByClient.computeIfAbsent(variable.getClient(), k -> new ArrayList<>()).add(i);
+      } else {
+        int index = i;
+        reads.add(() -> values[index] = supplier.getValue());
+      }
+    }
+
+    for (List<Integer> indices : variablesByClient.values()) {
+      reads.add(() -> readVariables(suppliers, indices, values));
+    }
+
+    // Every read writes to distinct indices of values.
+    runWithinFetchTimeout(reads);
+  }
+
+  /**
+   * Gets the value of a single supplier, serving OPC UA variables from their
+   * cache if possible.
+   */
+  private Object fetchValue(PropertyValueSupplier supplier) {
+    if (supplier instanceof OpcUaVariable) {
+      Object cached = ((OpcUaVariable) supplier).peekValue();
+      if (cached != OpcUaVariable.NOT_CACHED) {
+        return cached;
+      }
+    }
+
+    // Nothing to parallelize, so the supplier is read on this thread.
+    long deadline = System.nanoTime() + fetchTimeout.toNanos();
+    Object[] value = new Object[1];
+    runBeforeDeadline(() -> value[0] = supplier.getValue(), deadline);
+    return value[0];
+  }
+
+  /**
+   * Runs the reads in parallel on the fetch executor and waits for all of them
+   * until the fetch timeout has passed. Reads which are still running after the
+   * timeout or after another read failed are interrupted.
+   *
+   * <p>
+   * If the executor runs a read on this thread, e.g. because its pool is
+   * saturated, the read is interrupted at the deadline as well. Completing the
+   * tasks publishes their writes to this thread.
+   */
+  private void runWithinFetchTimeout(List<Runnable> reads) {
+    long deadline = System.nanoTime() + fetchTimeout.toNanos();
+    Thread caller = Thread.currentThread();
+    List<FutureTask<Void>> tasks = new ArrayList<>(reads.size());
+    try {
+      for (Runnable read : reads) {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+          if (Thread.currentThread() == caller) {
+            runBeforeDeadline(read, deadline);
+          } else {
+            read.run();
+          }
+        }, null);
+        tasks.add(task);
+        fetchExecutor.execute(task);
+      }
+
+      for (FutureTask<Void> task : tasks) {
+        task.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProviderException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new ProviderException(cause);
+    } catch (TimeoutException e) {
+      throw fetchTimedOut();
+    } finally {
+      for (FutureTask<Void> task : tasks) {
+        task.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Runs a read on this thread and interrupts it once the deadline has passed.
+   *
+   * @throws ProviderException If the deadline passed before the read
+   *                           completed.
+   */
+  private void runBeforeDeadline(Runnable read, long deadline) {
+    Deadline timer = new Deadline(Thread.currentThread());
+    ScheduledFuture<?> expiry = SharedExecutors.scheduler().schedule(timer::expire, deadline - System.nanoTime(),
+        TimeUnit.NANOSECONDS);
+    RuntimeException failure = null;
+    try {
+      read.run();
+    } catch (RuntimeException e) {
+      failure = e;
+    } finally {
+      expiry.cancel(false);
+    }
+
+    if (timer.finish()) {
+      throw fetchTimedOut();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private ProviderException fetchTimedOut() {
+    return new ProviderException("Suppliers of '" + getIdShort() + "' didn't respond within " + fetchTimeout + ".");
+  }
+
+  private static void readVariables(ConnectionTable<PropertyValueSupplier> suppliers, List<Integer> indices,
+      Object[] values) {
+    List<OpcUaVariable> variables = new ArrayList<>(indices.size());
+    for (int index : indices) {
+      variables.add((OpcUaVariable) suppliers.get(index));
+    }
+
+    List<Object> variableValues = OpcUaVariable.getValues(variables);
+    for (int i = 0; i < indices.size(); i++) {
+      values[indices.get(i)] = variableValues.get(i);
+    }
+  }
+
+  private static void applyValuesToConsumers(Map<PropertyValueConsumer, Object> valuesByConsumer) {
+    Map<OpcUaVariable, Object> variableValues = new HashMap<>();
+
+    for (Map.Entry<PropertyValueConsumer, Object> entry : valuesByConsumer.entrySet()) {
+      PropertyValueConsumer consumer = entry.getKey();
+      if (consumer instanceof OpcUaVariable) {
+        // OPC UA variables are written in as few batches as possible below.
+        variableValues.put((OpcUaVariable) consumer, entry.getValue());
+      } else {
+        consumer.applyValue(entry.getValue());
+      }
+    }
+
+    OpcUaVariable.applyValues(variableValues);
+  }
+
+  /**
+   * Interrupts a thread reading a supplier once the fetch timeout has passed,
+   * unless the read finished before.
+   */
+  private static final class Deadline {
+    private final Thread reader;
+    private boolean finished;
+    private boolean expired;
+
+    private Deadline(Thread reader) {
+      this.reader = reader;
+    }
+
+    private synchronized void expire() {
+      if (!finished) {
+        expired = true;
+        reader.interrupt();
+      }
+    }
+
+    /**
+     * Marks the read as finished. If the deadline interrupted it, the interrupt
+     * is cleared, so it doesn't leak into the reader's further work.
+     *
+     * @return Whether the deadline passed before the read finished.
+     */
+    private synchronized boolean finish() {
+      finished = true;
+      if (expired) {
+        Thread.interrupted();
+      }
+      return expired;
+    }
+  }
+
+  /**
+   * The supplier values and their view, reused by the reads on one thread.
+   */
+  private static final class ValueBuffer {
+    private final IndexedValueMap view = new IndexedValueMap();
+    private Object[] values = new Object[8];
+    private boolean inUse;
+
+    private void acquire(int size) {
+      if (values.length < size) {
+        values = new Object[Math.max(size, 2 * values.length)];
+      }
+      inUse = true;
+    }
+
+    /**
+     * Drops the references to the values, so they can be garbage collected.
+     */
+    private void release(int size) {
+      Arrays.fill(values, 0, size, null);
+      view.reset(ConnectionTable.empty(), values);
+      inUse = false;
+    }
+  }
+
+  /**
+   * The inputs and result of the last supply filter evaluation.
+   */
+  private static final class Memo {
+    private final ConnectionTable<PropertyValueSupplier> suppliers;
+    private final SupplyFilter filter;
+    private final Object[] values;
+    private final Object result;
+
+    private Memo(ConnectionTable<PropertyValueSupplier> suppliers, SupplyFilter filter, Object[] values,
+        Object result) {
+      this.suppliers = suppliers;
+      this.filter = filter;
+      this.values = values;
+      this.result = result;
+    }
+
+    private boolean matches(ConnectionTable<PropertyValueSupplier> suppliers, SupplyFilter filter,
+        Object[] values) {
+      if (this.suppliers != suppliers || this.filter != filter) {
+        return false;
+      }
+      for (int i = 0; i < this.values.length; i++) {
+        if (values[i] != this.values[i] && (values[i] == null || !values[i].equals(this.values[i]))) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 }
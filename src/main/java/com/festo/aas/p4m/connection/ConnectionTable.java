@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, indexed list of named connections, i.e. the suppliers or
+ * consumers of a {@link ConnectedProperty}.
+ *
+ * <p>
+ * Adding a connection creates a new table, so a table can be read by any number
+ * of threads without locking. Connections are kept in arrays in the order in
+ * which they were added; the index of a name never changes.
+ *
+ * @param <T> The type of the connections.
+ */
+final class ConnectionTable<T> {
+  private static final ConnectionTable<?> EMPTY = new ConnectionTable<>(new String[0], new Object[0]);
+
+  private final String[] names;
+  private final Object[] connections;
+  private final Map<String, Integer> indices;
+
+  private ConnectionTable(String[] names, Object[] connections) {
+    this.names = names;
+    this.connections = connections;
+    this.indices = new HashMap<>(names.length * 2);
+    for (int i = 0; i < names.length; i++) {
+      indices.put(names[i], i);
+    }
+  }
+
+  /**
+   * Gets the table without any connections.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> ConnectionTable<T> empty() {
+    return (ConnectionTable<T>) EMPTY;
+  }
+
+  /**
+   * Creates a copy of this table with an additional connection.
+   *
+   * @throws IllegalArgumentException if a connection with that name exists.
+   */
+  ConnectionTable<T> with(String name, T connection) {
+    if (indices.containsKey(name)) {
+      throw new IllegalArgumentException("A connection named '" + name + "' already exists.");
+    }
+
+    String[] newNames = Arrays.copyOf(names, names.length + 1);
+    Object[] newConnections = Arrays.copyOf(connections, connections.length + 1);
+    newNames[names.length] = name;
+    newConnections[connections.length] = connection;
+    return new ConnectionTable<>(newNames, newConnections);
+  }
+
+  int size() {
+    return names.length;
+  }
+
+  String name(int index) {
+    return names[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    return (T) connections[index];
+  }
+
+  /**
+   * Gets the index of the connection with the given name, or {@code -1}.
+   */
+  int indexOf(Object name) {
+    Integer index = indices.get(name);
+    return index == null ? -1 : index;
+  }
+
+  boolean contains(String name) {
+    return indices.containsKey(name);
+  }
+}
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+
+/**
+ * An {@link OpcUaVariable} of an OPC UA <i>Double</i> or <i>Float</i> variable
+ * which can be read and written without boxing.
+ *
+ * <p>
+ * The value is boxed once when it is read from the server. Reading it from the
+ * cache with {@link #getAsDouble()} doesn't allocate.
+ */
+public class DoubleOpcUaVariable extends OpcUaVariable implements DoubleValueSupplier {
+  /**
+   * Creates a new variable for an OPC UA <i>Double</i> node.
+   *
+   * @param client        The client object to use for communication.
+   * @param nodeId        The node whose value to read or write.
+   * @param cacheDuration The maximum age of the cached value before it will be
+   *                      refetched.
+   */
+  public DoubleOpcUaVariable(OpcUaClient client, NodeId nodeId, Duration cacheDuration) {
+    this(client, nodeId, Double.class, CachePolicy.expireAfter(cacheDuration));
+  }
+
+  /**
+   * Creates a new variable for an OPC UA <i>Double</i> node.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public DoubleOpcUaVariable(OpcUaClient client, NodeId nodeId, CachePolicy cachePolicy) {
+    this(client, nodeId, Double.class, cachePolicy);
+  }
+
+  /**
+   * Creates a new variable for an OPC UA <i>Double</i> or <i>Float</i> node.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param dataType    Either {@code Double.class} or {@code Float.class}.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public DoubleOpcUaVariable(OpcUaClient client, NodeId nodeId, Class<?> dataType, CachePolicy cachePolicy) {
+    super(client, nodeId, dataType, cachePolicy);
+    if (dataType != Double.class && dataType != Float.class) {
+      throw new IllegalArgumentException("dataType must be Double or Float, got " + dataType);
+    }
+  }
+
+  @Override
+  public double getAsDouble() throws ProviderException {
+    return ((Number) getValue()).doubleValue();
+  }
+
+  /**
+   * Writes a new value to the OPC UA variable. See
+   * {@link #applyValue(Object)}.
+   *
+   * @param value The new value. Rounded to {@code float} for <i>Float</i>
+   *              nodes.
+   * @throws ProviderException If the communication with the asset failed.
+   */
+  public void applyAsDouble(double value) throws ProviderException {
+    applyValue(getDataType() == Float.class ? (Object) (float) value : (Object) value);
+  }
+}
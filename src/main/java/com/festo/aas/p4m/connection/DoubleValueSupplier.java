@@ -0,0 +1,36 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+
+/**
+ * A {@link PropertyValueSupplier} of {@code double} values which can be read
+ * without boxing.
+ */
+public interface DoubleValueSupplier extends PropertyValueSupplier {
+  /**
+   * Gets the latest value from the asset.
+   *
+   * @return The current value.
+   * @throws ProviderException If the communication with the asset failed.
+   */
+  double getAsDouble() throws ProviderException;
+
+  @Override
+  default Object getValue() throws ProviderException {
+    return getAsDouble();
+  }
+}
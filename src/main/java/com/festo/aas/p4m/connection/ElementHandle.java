@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
+import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaHandler;
+
+/**
+ * A reusable accessor for the value of a single submodel element.
+ *
+ * <p>
+ * Handles are created through {@link SubmodelWrapper#handle(String...)}. The
+ * element is looked up once, when the handle is created. Afterwards,
+ * {@link #get()} and {@link #set(Object)} go straight to the element's value
+ * without building or parsing any paths. This makes handles the preferred way
+ * of accessing elements which are read or written repeatedly.
+ *
+ * <p>
+ * Like {@link SubmodelWrapper#getValue(String...)}, a handle works for both
+ * dynamic and static elements. Getters and setters installed through a
+ * {@link ValueDelegate} after the handle was created are picked up as well.
+ * <br>
+ * If the element itself is removed from or replaced in the submodel, the handle
+ * keeps accessing the old element and must be created anew.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * ElementHandle speed = wrapper.handle("Drive", "Speed");
+ * while (running) {
+ *   speed.set(controller.nextSpeed((Double) speed.get()));
+ * }
+ * }</pre>
+ */
+public final class ElementHandle {
+  private final VABLambdaHandler handler;
+  private final Map<String, Object> element;
+  private final String[] idShorts;
+
+  ElementHandle(VABLambdaHandler handler, Map<String, Object> element, String[] idShorts) {
+    this.handler = handler;
+    this.element = element;
+    this.idShorts = idShorts;
+  }
+
+  /**
+   * Gets the value of the element.
+   *
+   * @return The value of the element as an Object. Must be cast to the correct
+   *         type.
+   */
+  public Object get() {
+    return handler.postprocessObject(handler.getElementProperty(element, Property.VALUE));
+  }
+
+  /**
+   * Sets the value of the element.
+   *
+   * @param value The new value to set.
+   */
+  public void set(Object value) {
+    handler.setModelPropertyValue(element, Property.VALUE, value);
+  }
+
+  /**
+   * Gets the path of idShorts this handle was created for.
+   *
+   * @return A copy of the idShorts.
+   */
+  public String[] getIdShorts() {
+    return idShorts.clone();
+  }
+
+  @Override
+  public String toString() {
+    return "ElementHandle" + Arrays.toString(idShorts);
+  }
+}
@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+
+/**
+ * The outcome of writing a single submodel element as part of
+ * {@link SubmodelWrapper#setValues(java.util.Map, boolean)}.
+ *
+ * <p>
+ * Each element in a bulk write may fail on its own. In all-or-nothing mode, a
+ * single failure causes all other elements to be rolled back to their previous
+ * values; these elements are reported as failed and rolled back.
+ */
+public final class ElementWriteResult {
+  private final String path;
+  private final RuntimeException error;
+  private final boolean rolledBack;
+
+  ElementWriteResult(String path, RuntimeException error, boolean rolledBack) {
+    this.path = path;
+    this.error = error;
+    this.rolledBack = rolledBack;
+  }
+
+  /**
+   * Gets the path of the element that was written.
+   *
+   * @return The idShorts of the element's path joined by {@code "/"}.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Whether the element was written successfully and kept its new value.
+   *
+   * @return {@code true} if the write succeeded.
+   */
+  public boolean isGood() {
+    return error == null;
+  }
+
+  /**
+   * Whether the element was written but then restored to its previous value
+   * because writing another element failed.
+   *
+   * @return {@code true} if the element was rolled back.
+   */
+  public boolean isRolledBack() {
+    return rolledBack;
+  }
+
+  /**
+   * Gets the reason why the element doesn't hold its new value.
+   *
+   * @return The error, or {@code null} if the write succeeded.
+   */
+  public RuntimeException getError() {
+    return error;
+  }
+
+  /**
+   * Throws an exception if the element wasn't written successfully.
+   *
+   * @throws ProviderException if the element doesn't hold its new value.
+   */
+  public void check() {
+    if (error instanceof ProviderException) {
+      throw error;
+    } else if (error != null) {
+      throw new ProviderException(error);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ElementWriteResult [path=" + path + ", error=" + error + ", rolledBack=" + rolledBack + "]";
+  }
+}
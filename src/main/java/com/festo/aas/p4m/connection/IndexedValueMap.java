@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only map view of supplier values, passed to every
+ * {@link SupplyFilter} which doesn't {@link SupplyFilter#mutatesValues() modify
+ * its input}.
+ *
+ * <p>
+ * The view doesn't copy anything. Lookups by name go through the index of the
+ * {@link ConnectionTable}, and entries are only created if the filter iterates
+ * over {@link #entrySet()}. A view can be {@link #reset reset} to other values,
+ * so one instance serves any number of reads on the same thread.
+ */
+final class IndexedValueMap extends AbstractMap<String, Object> implements SupplierValues {
+  private ConnectionTable<?> table = ConnectionTable.empty();
+  // May be longer than the table; only the first table.size() values belong to the view.
+  private Object[] values = new Object[0];
+  private Set<Entry<String, Object>> entrySet;
+
+  /**
+   * Makes this view show the given values.
+   *
+   * @param table  The suppliers, whose names index the values.
+   * @param values The values, at least as many as there are suppliers.
+   */
+  void reset(ConnectionTable<?> table, Object[] values) {
+    this.table = table;
+    this.values = values;
+  }
+
+  @Override
+  public int size() {
+    return table.size();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return table.indexOf(key) >= 0;
+  }
+
+  @Override
+  public Object get(Object key) {
+    int index = table.indexOf(key);
+    return index < 0 ? null : values[index];
+  }
+
+  @Override
+  public Object get(String name) {
+    int index = table.indexOf(name);
+    if (index < 0) {
+      throw new IllegalArgumentException("'" + name + "' is not a known PropertyValueSupplier.");
+    }
+    return values[index];
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super String, ? super Object> action) {
+    for (int i = 0; i < table.size(); i++) {
+      action.accept(table.name(i), values[i]);
+    }
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+    @Override
+    public int size() {
+      return table.size();
+    }
+
+    @Override
+    public Iterator<Entry<String, Object>> iterator() {
+      return new Iterator<Entry<String, Object>>() {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+          return next < table.size();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          int index = next++;
+          return new SimpleImmutableEntry<>(table.name(index), values[index]);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedByte;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedShort;
+
+/**
+ * An {@link OpcUaVariable} of an integral OPC UA variable which can be read and
+ * written without boxing.
+ *
+ * <p>
+ * All integral OPC UA types whose values fit into a {@code long} are
+ * supported, i.e. everything except <i>UInt64</i>. The value is boxed once when
+ * it is read from the server. Reading it from the cache with
+ * {@link #getAsLong()} doesn't allocate.
+ */
+public class LongOpcUaVariable extends OpcUaVariable implements LongValueSupplier {
+  private static final List<Class<?>> SUPPORTED_TYPES = Arrays.asList(Long.class, Integer.class, Short.class,
+      Byte.class, UnsignedInteger.class, UnsignedShort.class, UnsignedByte.class);
+
+  /**
+   * Creates a new variable for an OPC UA <i>Int64</i> node.
+   *
+   * @param client        The client object to use for communication.
+   * @param nodeId        The node whose value to read or write.
+   * @param cacheDuration The maximum age of the cached value before it will be
+   *                      refetched.
+   */
+  public LongOpcUaVariable(OpcUaClient client, NodeId nodeId, Duration cacheDuration) {
+    this(client, nodeId, Long.class, CachePolicy.expireAfter(cacheDuration));
+  }
+
+  /**
+   * Creates a new variable for an OPC UA <i>Int64</i> node.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public LongOpcUaVariable(OpcUaClient client, NodeId nodeId, CachePolicy cachePolicy) {
+    this(client, nodeId, Long.class, cachePolicy);
+  }
+
+  /**
+   * Creates a new variable for an integral OPC UA node.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param dataType    The class matching the type of the OPC UA variable, e.g.
+   *                    {@code Integer.class} or {@code UnsignedShort.class}.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public LongOpcUaVariable(OpcUaClient client, NodeId nodeId, Class<?> dataType, CachePolicy cachePolicy) {
+    super(client, nodeId, dataType, cachePolicy);
+    if (!SUPPORTED_TYPES.contains(dataType)) {
+      throw new IllegalArgumentException("dataType must be one of " + SUPPORTED_TYPES + ", got " + dataType);
+    }
+  }
+
+  @Override
+  public long getAsLong() throws ProviderException {
+    return ((Number) getValue()).longValue();
+  }
+
+  /**
+   * Writes a new value to the OPC UA variable. See
+   * {@link #applyValue(Object)}.
+   *
+   * @param value The new value.
+   * @throws IllegalArgumentException If the value is out of range for the
+   *                                  variable's type.
+   * @throws ProviderException        If the communication with the asset
+   *                                  failed.
+   */
+  public void applyAsLong(long value) throws ProviderException {
+    Class<?> dataType = getDataType();
+    if (dataType == Integer.class) {
+      applyValue((int) checkRange(value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+    } else if (dataType == Short.class) {
+      applyValue((short) checkRange(value, Short.MIN_VALUE, Short.MAX_VALUE));
+    } else if (dataType == Byte.class) {
+      applyValue((byte) checkRange(value, Byte.MIN_VALUE, Byte.MAX_VALUE));
+    } else {
+      // Long and the unsigned types accept a Long and check the range themselves.
+      applyValue(value);
+    }
+  }
+
+  private long checkRange(long value, long min, long max) {
+    if (value < min || value > max) {
+      throw new IllegalArgumentException(String.format("Value %d is out of range for %s.", value, getDataType()));
+    }
+    return value;
+  }
+}
@@ -0,0 +1,44 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Map;
+
+/**
+ * A {@link SupplyFilter} which computes a {@code long} from primitive supplier
+ * values. The result is only boxed when it is handed to BaSyx.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * property.setSupplyFilter((LongSupplyFilter) values -> values.getAsLong("good") + values.getAsLong("bad"));
+ * }</pre>
+ */
+@FunctionalInterface
+public interface LongSupplyFilter extends SupplyFilter {
+  /**
+   * Computes the property value.
+   *
+   * @param values The supplier values.
+   *
+   * @return The property value.
+   */
+  long applyAsLong(SupplierValues values);
+
+  @Override
+  default Object filter(Map<String, Object> values) {
+    return applyAsLong(SupplierValues.of(values));
+  }
+}
@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Instant;
+import java.util.GregorianCalendar;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedByte;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedLong;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedShort;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.ULong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+
+/**
+ * Maps values between the Milo types used on the wire and the types exposed by
+ * BaSyx' {@link org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient}.
+ *
+ * <p>
+ * BaSyx performs the same mapping internally, but only for single-node
+ * operations. The batched operations in {@link OpcUaClient} talk to Milo
+ * directly and use this class to produce identical results.
+ */
+final class MiloTypeMapper {
+  private static final DatatypeFactory xmlDatatypeFactory;
+
+  static {
+    try {
+      xmlDatatypeFactory = DatatypeFactory.newInstance();
+    } catch (DatatypeConfigurationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private MiloTypeMapper() {
+    throw new AssertionError("Cannot create instances.");
+  }
+
+  /**
+   * Unwraps a Milo variant and maps its content to the matching BaSyx type.
+   *
+   * @param variant The variant to unwrap. May be {@code null}.
+   *
+   * @return The mapped value or {@code null} if the variant was empty.
+   */
+  static Object toBaSyx(Variant variant) {
+    if (variant == null || variant.getValue() == null) {
+      return null;
+    }
+
+    Object value = variant.getValue();
+    if (value instanceof DateTime) {
+      GregorianCalendar calendar = new GregorianCalendar();
+      calendar.setTimeInMillis(((DateTime) value).getJavaTime());
+      return xmlDatatypeFactory.newXMLGregorianCalendar(calendar);
+    } else if (value instanceof UByte) {
+      return new UnsignedByte((UByte) value);
+    } else if (value instanceof UShort) {
+      return new UnsignedShort((UShort) value);
+    } else if (value instanceof UInteger) {
+      return new UnsignedInteger((UInteger) value);
+    } else if (value instanceof ULong) {
+      return new UnsignedLong((ULong) value);
+    } else {
+      return value;
+    }
+  }
+
+  /**
+   * Maps a BaSyx value to the matching Milo type and wraps it in a variant.
+   *
+   * @param value The value to wrap.
+   *
+   * @return A variant suitable for writing to an OPC UA server.
+   *
+   * @throws OpcUaException if the value is an {@link XMLGregorianCalendar} which
+   *                        isn't a {@code dateTime}.
+   */
+  static Variant toMilo(Object value) {
+    if (value instanceof XMLGregorianCalendar) {
+      XMLGregorianCalendar calendar = (XMLGregorianCalendar) value;
+      if (calendar.getXMLSchemaType() != DatatypeConstants.DATETIME) {
+        throw new OpcUaException("Only dateTime values can be written to OPC UA, got " + calendar);
+      }
+      Instant instant = Instant.ofEpochMilli(calendar.toGregorianCalendar().getTimeInMillis());
+      return new Variant(new DateTime(instant));
+    } else if (value instanceof UnsignedByte) {
+      return new Variant(((UnsignedByte) value).getInternalValue());
+    } else if (value instanceof UnsignedShort) {
+      return new Variant(((UnsignedShort) value).getInternalValue());
+    } else if (value instanceof UnsignedInteger) {
+      return new Variant(((UnsignedInteger) value).getInternalValue());
+    } else if (value instanceof UnsignedLong) {
+      return new Variant(((UnsignedLong) value).getInternalValue());
+    } else {
+      return new Variant(value);
+    }
+  }
+}
@@ -14,11 +14,55 @@
 
 package com.festo.aas.p4m.connection;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
+import org.eclipse.basyx.vab.protocol.opcua.connector.milo.MiloOpcUaClient;
 import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
 import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.sdk.client.api.UaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.serialization.SerializationContext;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.DataChangeFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Wrapper around BaSyx' OPC UA client with a simpler API.
@@ -81,7 +125,16 @@ import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
  * NodeId nodeId2 = NodeId.parse("ns=1;i=4211");
  * }</pre>
  */
-public final class OpcUaClient {
+public final class OpcUaClient implements AutoCloseable {
+  /**
+   * The maximum number of nodes sent in a single batched request, unless the
+   * server announces a lower limit or {@link #setMaxNodesPerRequest(int)} is
+   * used to change it.
+   */
+  public static final int DEFAULT_MAX_NODES_PER_REQUEST = 1000;
+
+  private static final Logger logger = LoggerFactory.getLogger(OpcUaClient.class);
+  private static final NodeId SERVER_STATE_NODE_ID = new NodeId(Identifiers.Server_ServerStatus_State);
 
   /**
    * The BaSyx OPC UA client object. Use this if you need more advanced OPA UA
@@ -94,6 +147,18 @@ public final class OpcUaClient {
    */
   public final String endpoint;
 
+  private final Session[] sessions;
+  private volatile ScheduledFuture<?> healthChecks;
+  private volatile int maxNodesPerRequest = DEFAULT_MAX_NODES_PER_REQUEST;
+  private volatile int serverMaxNodesPerRead = -1;
+  private volatile int serverMaxNodesPerWrite = -1;
+  private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+  private final ConcurrentMap<Long, CompletableFuture<UaSubscription>> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicLong clientHandles = new AtomicLong();
+  private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+  private final ReadAggregator readAggregator = new ReadAggregator(this);
+  private volatile long readAggregationWindowNanos;
+
   /**
    * Creates a new wrapper for the given BaSyx OPC UA client.
    *
@@ -106,8 +171,49 @@ public final class OpcUaClient {
    * @param baSyxClient The raw OPC UA client object to wrap.
    */
   public OpcUaClient(IOpcUaClient baSyxClient) {
-    this.baSyxClient = baSyxClient;
+    this(Collections.singletonList(baSyxClient));
+  }
+
+  /**
+   * Creates a new wrapper which spreads its requests over several BaSyx OPC UA
+   * clients connected to the same endpoint.
+   *
+   * <p>
+   * Each BaSyx client maintains its own session with the server. Every request
+   * is dispatched to the session with the fewest requests in flight, skipping
+   * sessions which failed their last {@link #startHealthChecks(Duration) health
+   * check}. Subscriptions are always created on the first session, which is
+   * also exposed as {@link #baSyxClient}. They aren't moved to another session
+   * if the first one fails. Milo re-establishes that session and transfers its
+   * subscriptions once the server is reachable again. In the meantime,
+   * {@link SubscribedOpcUaVariable}s fall back to regular reads, which use the
+   * remaining healthy sessions, as soon as the first session fails its health
+   * check.
+   *
+   * <p>
+   * Most users will typically prefer
+   * {@link OpcUaClientFactory#createPooledClient(String,
+   * org.eclipse.basyx.vab.protocol.opcua.connector.ClientConfiguration, int)}
+   * over this constructor.
+   *
+   * @param baSyxClients The raw OPC UA client objects to wrap. All must connect
+   *                     to the same endpoint.
+   */
+  public OpcUaClient(List<IOpcUaClient> baSyxClients) {
+    if (baSyxClients.isEmpty()) {
+      throw new IllegalArgumentException("At least one BaSyx client is required.");
+    }
+
+    baSyxClient = baSyxClients.get(0);
     endpoint = baSyxClient.getEndpointUrl();
+    sessions = new Session[baSyxClients.size()];
+    for (int i = 0; i < sessions.length; i++) {
+      IOpcUaClient session = baSyxClients.get(i);
+      if (!Objects.equals(endpoint, session.getEndpointUrl())) {
+        throw new IllegalArgumentException("All BaSyx clients must connect to the same endpoint.");
+      }
+      sessions[i] = new Session(session);
+    }
   }
 
   /**
@@ -144,7 +250,134 @@ public final class OpcUaClient {
    *                        AAS.
    */
   public Object readValue(NodeId nodeId) {
-    return baSyxClient.readValue(nodeId);
+    long window = readAggregationWindowNanos;
+    if (window > 0) {
+      return await(readAggregator.read(nodeId, window, maxNodesPerRequest)).getValue();
+    }
+
+    Session session = acquireSession();
+    try {
+      return session.client.readValue(nodeId);
+    } finally {
+      session.release();
+    }
+  }
+
+  /**
+   * Reads the values of multiple nodes from the OPC UA server.
+   *
+   * <p>
+   * Unlike calling {@link #readValue(NodeId)} once for every node, this method
+   * sends all nodes to the server in as few <i>Read</i> service calls as
+   * possible. If there are more nodes than the server allows in a single request
+   * (or more than {@link #setMaxNodesPerRequest(int) configured}), the nodes are
+   * split into several requests which are sent concurrently.
+   *
+   * <p>
+   * Each node is read independently. A failure to read one node, e.g. because it
+   * doesn't exist, doesn't affect the others. Check each {@link ReadResult} for
+   * its status.
+   *
+   * <h2>Example</h2>
+   *
+   * <pre>{@code
+   * List<NodeId> nodeIds = Arrays.asList(new NodeId(1, "Temperature"), new NodeId(1, "Pressure"));
+   * List<ReadResult> results = opcUaClient.readValues(nodeIds);
+   * Double temperature = (Double) results.get(0).getValue();
+   * Double pressure = (Double) results.get(1).getValue();
+   * }</pre>
+   *
+   * @param nodeIds The ids of the variables to read.
+   *
+   * @return One result for every node id, in the same order as {@code nodeIds}.
+   *
+   * @throws OpcUaException if the request as a whole fails, e.g. because the
+   *                        server can't be reached.
+   */
+  public List<ReadResult> readValues(List<NodeId> nodeIds) {
+    return await(dispatch(client -> readBatched(client, nodeIds)));
+  }
+
+  /**
+   * Reads a value from the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * This is the non-blocking counterpart of {@link #readValue(NodeId)}. The
+   * returned future is completed on this client's
+   * {@link #setAsyncExecutor(Executor) async executor}.
+   *
+   * <h2>Example</h2>
+   *
+   * <p>
+   * This example reads two nodes concurrently and adds up their values once both
+   * have arrived.
+   *
+   * <pre>{@code
+   * CompletableFuture<Object> first = opcUaClient.readValueAsync(new NodeId(1, "First"));
+   * CompletableFuture<Object> second = opcUaClient.readValueAsync(new NodeId(1, "Second"));
+   * CompletableFuture<Integer> sum = first.thenCombine(second, (a, b) -> (Integer) a + (Integer) b);
+   * }</pre>
+   *
+   * @param nodeId The id of the variable to read.
+   *
+   * @return A future which completes with the value which was read or
+   *         exceptionally with an {@link OpcUaException}.
+   */
+  public CompletableFuture<Object> readValueAsync(NodeId nodeId) {
+    return readValueAsync(nodeId, asyncExecutor);
+  }
+
+  /**
+   * Reads a value from the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * Same as {@link #readValueAsync(NodeId)}, but the returned future is
+   * completed on the given executor.
+   *
+   * @param nodeId   The id of the variable to read.
+   * @param executor The executor on which to complete the returned future.
+   *
+   * @return A future which completes with the value which was read or
+   *         exceptionally with an {@link OpcUaException}.
+   */
+  public CompletableFuture<Object> readValueAsync(NodeId nodeId, Executor executor) {
+    return completeOn(dispatch(client -> client.readValueAsync(nodeId)), executor);
+  }
+
+  /**
+   * Reads the values of multiple nodes from the OPC UA server without blocking
+   * the calling thread.
+   *
+   * <p>
+   * This is the non-blocking counterpart of {@link #readValues(List)}. The
+   * returned future is completed on this client's
+   * {@link #setAsyncExecutor(Executor) async executor}.
+   *
+   * @param nodeIds The ids of the variables to read.
+   *
+   * @return A future which completes with one result for every node id, in the
+   *         same order as {@code nodeIds}.
+   */
+  public CompletableFuture<List<ReadResult>> readValuesAsync(List<NodeId> nodeIds) {
+    return readValuesAsync(nodeIds, asyncExecutor);
+  }
+
+  /**
+   * Reads the values of multiple nodes from the OPC UA server without blocking
+   * the calling thread.
+   *
+   * <p>
+   * Same as {@link #readValuesAsync(List)}, but the returned future is completed
+   * on the given executor.
+   *
+   * @param nodeIds  The ids of the variables to read.
+   * @param executor The executor on which to complete the returned future.
+   *
+   * @return A future which completes with one result for every node id, in the
+   *         same order as {@code nodeIds}.
+   */
+  public CompletableFuture<List<ReadResult>> readValuesAsync(List<NodeId> nodeIds, Executor executor) {
+    return completeOn(dispatch(client -> readBatched(client, nodeIds)), executor);
   }
 
   /**
@@ -178,7 +411,121 @@ public final class OpcUaClient {
    *                        AAS.
    */
   public void writeValue(NodeId nodeId, Object value) {
-    baSyxClient.writeValue(nodeId, value);
+    Session session = acquireSession();
+    try {
+      session.client.writeValue(nodeId, value);
+    } finally {
+      session.release();
+    }
+  }
+
+  /**
+   * Writes a value to the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * This is the non-blocking counterpart of {@link #writeValue(NodeId, Object)}.
+   * The returned future is completed on this client's
+   * {@link #setAsyncExecutor(Executor) async executor}.
+   *
+   * @param nodeId The id of the variable to write.
+   * @param value  The new value to write.
+   *
+   * @return A future which completes once the value was written or exceptionally
+   *         with an {@link OpcUaException}.
+   */
+  public CompletableFuture<Void> writeValueAsync(NodeId nodeId, Object value) {
+    return writeValueAsync(nodeId, value, asyncExecutor);
+  }
+
+  /**
+   * Writes a value to the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * Same as {@link #writeValueAsync(NodeId, Object)}, but the returned future is
+   * completed on the given executor.
+   *
+   * @param nodeId   The id of the variable to write.
+   * @param value    The new value to write.
+   * @param executor The executor on which to complete the returned future.
+   *
+   * @return A future which completes once the value was written or exceptionally
+   *         with an {@link OpcUaException}.
+   */
+  public CompletableFuture<Void> writeValueAsync(NodeId nodeId, Object value, Executor executor) {
+    return completeOn(dispatch(client -> client.writeValueAsync(nodeId, value)), executor);
+  }
+
+  /**
+   * Writes the values of multiple nodes on the OPC UA server.
+   *
+   * <p>
+   * Unlike calling {@link #writeValue(NodeId, Object)} once for every node, this
+   * method sends all values to the server in as few <i>Write</i> service calls
+   * as possible. Like {@link #readValues(List)}, large batches are split
+   * according to the server's operation limits.
+   *
+   * <p>
+   * Each node is written independently. A failure to write one node doesn't
+   * prevent the others from being written. Check each {@link WriteResult} for
+   * its status.
+   *
+   * <h2>Example</h2>
+   *
+   * <pre>{@code
+   * Map<NodeId, Object> values = new LinkedHashMap<>();
+   * values.put(new NodeId(1, "Setpoint"), 21.5);
+   * values.put(new NodeId(1, "Enabled"), true);
+   * for (WriteResult result : opcUaClient.writeValues(values)) {
+   *   result.check();
+   * }
+   * }</pre>
+   *
+   * @param values The new values by the ids of the variables to write.
+   *
+   * @return One result for every node, in the iteration order of
+   *         {@code values}.
+   *
+   * @throws OpcUaException if the request as a whole fails, e.g. because the
+   *                        server can't be reached.
+   */
+  public List<WriteResult> writeValues(Map<NodeId, Object> values) {
+    return await(dispatch(client -> writeBatched(client, values)));
+  }
+
+  /**
+   * Writes the values of multiple nodes on the OPC UA server without blocking the
+   * calling thread.
+   *
+   * <p>
+   * This is the non-blocking counterpart of {@link #writeValues(Map)}. The
+   * returned future is completed on this client's
+   * {@link #setAsyncExecutor(Executor) async executor}.
+   *
+   * @param values The new values by the ids of the variables to write.
+   *
+   * @return A future which completes with one result for every node, in the
+   *         iteration order of {@code values}.
+   */
+  public CompletableFuture<List<WriteResult>> writeValuesAsync(Map<NodeId, Object> values) {
+    return writeValuesAsync(values, asyncExecutor);
+  }
+
+  /**
+   * Writes the values of multiple nodes on the OPC UA server without blocking the
+   * calling thread.
+   *
+   * <p>
+   * Same as {@link #writeValuesAsync(Map)}, but the returned future is completed
+   * on the given executor.
+   *
+   * @param values   The new values by the ids of the variables to write.
+   * @param executor The executor on which to complete the returned future.
+   *
+   * @return A future which completes with one result for every node, in the
+   *         iteration order of {@code values}.
+   */
+  public CompletableFuture<List<WriteResult>> writeValuesAsync(Map<NodeId, Object> values, Executor executor) {
+    return completeOn(dispatch(client -> writeBatched(client, values)), executor);
   }
 
   /**
@@ -227,6 +574,664 @@ public final class OpcUaClient {
    *                        AAS.
    */
   public List<Object> invokeMethod(NodeId ownerId, NodeId methodId, Object... parameters) {
-    return baSyxClient.invokeMethod(ownerId, methodId, parameters);
+    Session session = acquireSession();
+    try {
+      return session.client.invokeMethod(ownerId, methodId, parameters);
+    } finally {
+      session.release();
+    }
+  }
+
+  /**
+   * Invokes a method on the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * This is the non-blocking counterpart of
+   * {@link #invokeMethod(NodeId, NodeId, Object...)}. The returned future is
+   * completed on this client's {@link #setAsyncExecutor(Executor) async
+   * executor}.
+   *
+   * @param ownerId    The id of the object on which to invoke the method.
+   * @param methodId   The id of the method itself.
+   * @param parameters The input arguments to the method.
+   *
+   * @return A future which completes with the values returned by the OPC UA
+   *         method or exceptionally with an {@link OpcUaException}.
+   */
+  public CompletableFuture<List<Object>> invokeMethodAsync(NodeId ownerId, NodeId methodId, Object... parameters) {
+    return invokeMethodAsync(asyncExecutor, ownerId, methodId, parameters);
+  }
+
+  /**
+   * Invokes a method on the OPC UA server without blocking the calling thread.
+   *
+   * <p>
+   * Same as {@link #invokeMethodAsync(NodeId, NodeId, Object...)}, but the
+   * returned future is completed on the given executor.
+   *
+   * @param executor   The executor on which to complete the returned future.
+   * @param ownerId    The id of the object on which to invoke the method.
+   * @param methodId   The id of the method itself.
+   * @param parameters The input arguments to the method.
+   *
+   * @return A future which completes with the values returned by the OPC UA
+   *         method or exceptionally with an {@link OpcUaException}.
+   */
+  public CompletableFuture<List<Object>> invokeMethodAsync(Executor executor, NodeId ownerId, NodeId methodId,
+      Object... parameters) {
+    return completeOn(dispatch(client -> client.invokeMethodAsync(ownerId, methodId, parameters)), executor);
+  }
+
+  /**
+   * Limits the number of nodes sent to the server in a single batched request.
+   *
+   * <p>
+   * If the server announces its own limit in its <i>OperationLimits</i> and that
+   * limit is lower, the server's limit is used instead.
+   *
+   * @param maxNodesPerRequest The maximum number of nodes per request. Must be
+   *                           positive.
+   */
+  public void setMaxNodesPerRequest(int maxNodesPerRequest) {
+    if (maxNodesPerRequest <= 0) {
+      throw new IllegalArgumentException("maxNodesPerRequest must be positive.");
+    }
+    this.maxNodesPerRequest = maxNodesPerRequest;
+  }
+
+  /**
+   * Sets the executor on which the futures returned by the asynchronous methods
+   * of this client are completed.
+   *
+   * <p>
+   * The OPC UA communication itself never blocks a thread while waiting for the
+   * server. The executor only runs the continuations that callers attach to the
+   * returned futures, so that slow continuations don't stall the OPC UA stack.
+   * By default, {@link ForkJoinPool#commonPool()} is used. On Java 21 or later,
+   * {@code Executors.newVirtualThreadPerTaskExecutor()} is a good choice for
+   * continuations which block.
+   *
+   * @param executor The executor to use.
+   */
+  public void setAsyncExecutor(Executor executor) {
+    this.asyncExecutor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * Sets a window in which concurrent calls to {@link #readValue(NodeId)} are
+   * collected and sent to the server as one batched read.
+   *
+   * <p>
+   * Every read then waits up to the window before it is sent, but many threads
+   * reading at the same time, e.g. while BaSyx serves several requests, cost a
+   * single round-trip. A window of a few milliseconds is usually enough. Reads
+   * issued one after another by a single thread don't benefit, they would just
+   * wait out the window. Use {@link OpcUaVariable#getValues(List)} for those,
+   * or {@link SubmodelWrapper#withPrefetchedValues(java.util.function.Supplier)}
+   * when BaSyx reads a whole submodel. Defaults to {@link Duration#ZERO}, i.e.
+   * no aggregation.
+   *
+   * @param window The aggregation window.
+   */
+  public void setReadAggregationWindow(Duration window) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("window must not be negative.");
+    }
+    readAggregationWindowNanos = window.toNanos();
+  }
+
+  /**
+   * Starts checking the health of this client's sessions periodically.
+   *
+   * <p>
+   * A health check reads the server's state. Sessions which fail the check
+   * receive no further requests until they pass a later check, unless all
+   * sessions are unhealthy. Calling this method again replaces the previous
+   * interval.
+   *
+   * @param interval The time between two health checks.
+   */
+  public synchronized void startHealthChecks(Duration interval) {
+    stopHealthChecks();
+    long millis = interval.toMillis();
+    healthChecks = SharedExecutors.scheduler().scheduleWithFixedDelay(this::checkHealth, millis, millis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the periodic health checks started by
+   * {@link #startHealthChecks(Duration)}. All sessions are considered healthy
+   * again.
+   */
+  public synchronized void stopHealthChecks() {
+    if (healthChecks != null) {
+      healthChecks.cancel(false);
+      healthChecks = null;
+    }
+    for (Session session : sessions) {
+      session.healthy = true;
+    }
+  }
+
+  /**
+   * Gets the number of sessions this client spreads its requests over.
+   *
+   * @return The pool size.
+   */
+  public int getPoolSize() {
+    return sessions.length;
+  }
+
+  /**
+   * Gets the number of sessions which passed their last health check.
+   *
+   * @return The number of healthy sessions.
+   */
+  public int getHealthySessionCount() {
+    int count = 0;
+    for (Session session : sessions) {
+      if (session.healthy) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Whether the session holding the subscriptions passed its last health
+   * check. Always {@code true} while no health checks are running.
+   */
+  boolean isSubscriptionSessionHealthy() {
+    return sessions[0].healthy;
+  }
+
+  /**
+   * Stops the health checks and disconnects all sessions from the server.
+   *
+   * <p>
+   * Subscriptions created through this client are deleted on the server
+   * before the sessions are disconnected, so they don't linger there until they
+   * time out. The client must not be used after it was closed.
+   */
+  @Override
+  public void close() {
+    stopHealthChecks();
+    for (Runnable listener : closeListeners) {
+      try {
+        listener.run();
+      } catch (RuntimeException e) {
+        logger.warn("Close listener of {} failed.", endpoint, e);
+      }
+    }
+
+    CompletableFuture<Void> subscriptionsDeleted = deleteSubscriptions();
+    for (Session session : sessions) {
+      if (session.client instanceof MiloOpcUaClient && session.client.hasConnected()) {
+        CompletableFuture<Void> ready = session.client == baSyxClient ? subscriptionsDeleted
+            : CompletableFuture.completedFuture(null);
+        ready.thenCompose(v -> ((MiloOpcUaClient) session.client).getClient()).thenCompose(UaClient::disconnect)
+            .whenComplete((client, error) -> {
+              if (error != null) {
+                logger.warn("Failed to disconnect from {}.", endpoint, error);
+              }
+            });
+      }
+    }
+  }
+
+  /**
+   * Deletes all subscriptions created through this client on the server.
+   *
+   * @return A future which completes once all deletions have finished,
+   *         successfully or not.
+   */
+  private CompletableFuture<Void> deleteSubscriptions() {
+    List<CompletableFuture<UaSubscription>> created = new ArrayList<>(subscriptions.values());
+    subscriptions.clear();
+    if (created.isEmpty() || !(baSyxClient instanceof MiloOpcUaClient)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    CompletableFuture<UaClient> uaClient = ((MiloOpcUaClient) baSyxClient).getClient();
+    List<CompletableFuture<?>> deletions = new ArrayList<>(created.size());
+    for (CompletableFuture<UaSubscription> subscription : created) {
+      deletions.add(subscription.thenCombine(uaClient, (sub, client) -> client.getSubscriptionManager()
+          .deleteSubscription(sub.getSubscriptionId())).thenCompose(deletion -> deletion)
+          .handle((deleted, error) -> {
+            if (error != null) {
+              logger.debug("Failed to delete a subscription on {}.", endpoint, error);
+            }
+            return null;
+          }));
+    }
+    return CompletableFuture.allOf(deletions.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Registers an action which runs when this client is {@link #close() closed},
+   * e.g. to drop objects which refer to it.
+   */
+  void addCloseListener(Runnable listener) {
+    closeListeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Removes an action added with {@link #addCloseListener(Runnable)}.
+   */
+  void removeCloseListener(Runnable listener) {
+    closeListeners.remove(listener);
+  }
+
+  int getCloseListenerCount() {
+    return closeListeners.size();
+  }
+
+  /**
+   * Creates a monitored item which reports every change of the node's value to
+   * the given listener.
+   *
+   * <p>
+   * Monitored items with the same {@link SubscriptionSettings#getPublishingInterval()
+   * publishing interval} share one OPC UA subscription. It defaults to the
+   * sampling interval, so without setting it every distinct sampling interval
+   * gets its own subscription.
+   *
+   * @param nodeId   The id of the variable to monitor.
+   * @param settings The sampling interval, queue size and deadband.
+   * @param listener Receives the initial value and every subsequent change. Bad
+   *                 status codes, e.g. after the connection was lost, are
+   *                 reported as well.
+   *
+   * @return A future which completes with a handle to delete the monitored item
+   *         again.
+   */
+  CompletableFuture<Monitor> monitorValue(NodeId nodeId, SubscriptionSettings settings,
+      Consumer<ReadResult> listener) {
+    if (!(baSyxClient instanceof MiloOpcUaClient)) {
+      CompletableFuture<Monitor> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new OpcUaException("Subscriptions are only supported for Milo-based clients."));
+      return failed;
+    }
+
+    long samplingInterval = settings.getSamplingInterval().toMillis();
+    long publishingInterval = settings.getPublishingInterval().toMillis();
+    CompletableFuture<UaClient> uaClient = ((MiloOpcUaClient) baSyxClient).getClient();
+    return uaClient.thenCombine(getSubscription(publishingInterval), (client, subscription) -> {
+      ExtensionObject filter = null;
+      if (settings.getDeadbandKind() != SubscriptionSettings.DeadbandKind.NONE) {
+        DeadbandType deadbandType = settings.getDeadbandKind() == SubscriptionSettings.DeadbandKind.ABSOLUTE
+            ? DeadbandType.Absolute
+            : DeadbandType.Percent;
+        DataChangeFilter dataChangeFilter = new DataChangeFilter(DataChangeTrigger.StatusValue,
+            Unsigned.uint(deadbandType.getValue()), settings.getDeadband());
+        // MiloOpcUaClient always creates Milo's default client implementation.
+        SerializationContext context = ((org.eclipse.milo.opcua.sdk.client.OpcUaClient) client)
+            .getStaticSerializationContext();
+        filter = ExtensionObject.encode(context, dataChangeFilter);
+      }
+
+      MonitoringParameters parameters = new MonitoringParameters(Unsigned.uint(clientHandles.incrementAndGet()),
+          (double) samplingInterval, filter, Unsigned.uint(settings.getQueueSize()), true);
+      ReadValueId readValueId = new ReadValueId(nodeId.getInternalId(), AttributeId.Value.uid(), null,
+          QualifiedName.NULL_VALUE);
+      MonitoredItemCreateRequest request = new MonitoredItemCreateRequest(readValueId, MonitoringMode.Reporting,
+          parameters);
+
+      return subscription.createMonitoredItems(TimestampsToReturn.Neither, Collections.singletonList(request),
+          (item, index) -> item.setValueConsumer(dataValue -> listener.accept(toReadResult(nodeId, dataValue))))
+          .thenApply(items -> {
+            UaMonitoredItem item = items.get(0);
+            if (!item.getStatusCode().isGood()) {
+              throw new OpcUaException("Monitoring node '" + nodeId + "' failed with status " + item.getStatusCode());
+            }
+            logger.debug("Monitoring '{}' on {} every {} ms.", nodeId, endpoint, item.getRevisedSamplingInterval());
+            return new Monitor(subscription, item);
+          });
+    }).thenCompose(monitor -> monitor);
+  }
+
+  /**
+   * Deletes a monitored item created by
+   * {@link #monitorValue(NodeId, SubscriptionSettings, Consumer)}.
+   *
+   * @param monitor The handle of the monitored item to delete.
+   *
+   * @return A future which completes once the item has been deleted.
+   */
+  CompletableFuture<Void> cancelMonitor(Monitor monitor) {
+    return monitor.subscription.deleteMonitoredItems(Collections.singletonList(monitor.item))
+        .thenApply(statusCodes -> null);
+  }
+
+  private CompletableFuture<UaSubscription> getSubscription(long publishingInterval) {
+    CompletableFuture<UaSubscription> subscription = subscriptions.computeIfAbsent(publishingInterval,
+        k -> ((MiloOpcUaClient) baSyxClient).getClient()
+            .thenCompose(uaClient -> uaClient.getSubscriptionManager().createSubscription(publishingInterval)));
+
+    // Don't cache failures, so that the next attempt can try again.
+    subscription.whenComplete((value, error) -> {
+      if (error != null) {
+        subscriptions.remove(publishingInterval, subscription);
+      }
+    });
+    return subscription;
+  }
+
+  private static ReadResult toReadResult(NodeId nodeId, DataValue dataValue) {
+    StatusCode status = dataValue.getStatusCode() != null ? dataValue.getStatusCode() : StatusCode.GOOD;
+    return new ReadResult(nodeId, MiloTypeMapper.toBaSyx(dataValue.getValue()), status);
+  }
+
+  private Session acquireSession() {
+    Session leastLoaded = null;
+    for (Session session : sessions) {
+      if (session.healthy && (leastLoaded == null || session.inFlight.get() < leastLoaded.inFlight.get())) {
+        leastLoaded = session;
+      }
+    }
+
+    if (leastLoaded == null) {
+      // No session is known to be healthy. Try the least loaded one anyway.
+      for (Session session : sessions) {
+        if (leastLoaded == null || session.inFlight.get() < leastLoaded.inFlight.get()) {
+          leastLoaded = session;
+        }
+      }
+    }
+
+    leastLoaded.inFlight.incrementAndGet();
+    return leastLoaded;
+  }
+
+  /**
+   * Runs an asynchronous operation on the least loaded session and keeps the
+   * session's load up to date until the operation completes.
+   */
+  private <T> CompletableFuture<T> dispatch(Function<IOpcUaClient, CompletableFuture<T>> operation) {
+    Session session = acquireSession();
+    CompletableFuture<T> future;
+    try {
+      future = operation.apply(session.client);
+    } catch (RuntimeException e) {
+      session.release();
+      throw e;
+    }
+    future.whenComplete((value, error) -> session.release());
+    return future;
+  }
+
+  private void checkHealth() {
+    for (Session session : sessions) {
+      session.client.readValueAsync(SERVER_STATE_NODE_ID).whenComplete((state, error) -> {
+        boolean healthy = error == null;
+        if (healthy != session.healthy) {
+          if (healthy) {
+            logger.info("Session to {} is healthy again.", endpoint);
+          } else {
+            logger.warn("Session to {} failed its health check.", endpoint, error);
+          }
+        }
+        session.healthy = healthy;
+      });
+    }
+  }
+
+  private CompletableFuture<List<ReadResult>> readBatched(IOpcUaClient client, List<NodeId> nodeIds) {
+    if (nodeIds.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    if (!(client instanceof MiloOpcUaClient)) {
+      return readIndividually(client, nodeIds);
+    }
+
+    return ((MiloOpcUaClient) client).getClient().thenCompose(uaClient -> getMaxNodesPerRead(uaClient)
+        .thenCompose(batchSize -> {
+          logger.debug("Reading {} nodes from {} in batches of {}.", nodeIds.size(), endpoint, batchSize);
+
+          List<CompletableFuture<List<DataValue>>> batches = new ArrayList<>();
+          for (List<NodeId> batch : partition(nodeIds, batchSize)) {
+            batches.add(uaClient.readValues(0.0, TimestampsToReturn.Neither, toMiloNodeIds(batch)));
+          }
+
+          return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<ReadResult> results = new ArrayList<>(nodeIds.size());
+            for (CompletableFuture<List<DataValue>> batch : batches) {
+              for (DataValue dataValue : batch.join()) {
+                results.add(toReadResult(nodeIds.get(results.size()), dataValue));
+              }
+            }
+            return results;
+          });
+        }));
+  }
+
+  private CompletableFuture<List<WriteResult>> writeBatched(IOpcUaClient client, Map<NodeId, Object> values) {
+    if (values.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    List<NodeId> nodeIds = new ArrayList<>(values.keySet());
+    if (!(client instanceof MiloOpcUaClient)) {
+      return writeIndividually(client, nodeIds, values);
+    }
+
+    List<DataValue> dataValues = new ArrayList<>(nodeIds.size());
+    try {
+      for (NodeId nodeId : nodeIds) {
+        dataValues.add(DataValue.valueOnly(MiloTypeMapper.toMilo(values.get(nodeId))));
+      }
+    } catch (OpcUaException e) {
+      CompletableFuture<List<WriteResult>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+
+    return ((MiloOpcUaClient) client).getClient().thenCompose(uaClient -> getMaxNodesPerWrite(uaClient)
+        .thenCompose(batchSize -> {
+          logger.debug("Writing {} nodes on {} in batches of {}.", nodeIds.size(), endpoint, batchSize);
+
+          List<CompletableFuture<List<StatusCode>>> batches = new ArrayList<>();
+          List<List<NodeId>> nodeIdBatches = partition(nodeIds, batchSize);
+          List<List<DataValue>> dataValueBatches = partition(dataValues, batchSize);
+          for (int i = 0; i < nodeIdBatches.size(); i++) {
+            batches.add(uaClient.writeValues(toMiloNodeIds(nodeIdBatches.get(i)), dataValueBatches.get(i)));
+          }
+
+          return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<WriteResult> results = new ArrayList<>(nodeIds.size());
+            for (CompletableFuture<List<StatusCode>> batch : batches) {
+              for (StatusCode status : batch.join()) {
+                results.add(new WriteResult(nodeIds.get(results.size()), status));
+              }
+            }
+            return results;
+          });
+        }));
+  }
+
+  private CompletableFuture<List<ReadResult>> readIndividually(IOpcUaClient client, List<NodeId> nodeIds) {
+    List<CompletableFuture<ReadResult>> reads = new ArrayList<>(nodeIds.size());
+    for (NodeId nodeId : nodeIds) {
+      reads.add(client.readValueAsync(nodeId).handle((value, error) -> {
+        if (error != null) {
+          logger.debug("Reading '{}' from {} failed.", nodeId, endpoint, error);
+          return new ReadResult(nodeId, null, toStatusCode(error), unwrap(error));
+        }
+        return new ReadResult(nodeId, value, StatusCode.GOOD);
+      }));
+    }
+    return collect(reads);
+  }
+
+  private CompletableFuture<List<WriteResult>> writeIndividually(IOpcUaClient client, List<NodeId> nodeIds,
+      Map<NodeId, Object> values) {
+    List<CompletableFuture<WriteResult>> writes = new ArrayList<>(nodeIds.size());
+    for (NodeId nodeId : nodeIds) {
+      writes.add(client.writeValueAsync(nodeId, values.get(nodeId)).handle((value, error) -> {
+        if (error != null) {
+          logger.debug("Writing '{}' on {} failed.", nodeId, endpoint, error);
+          return new WriteResult(nodeId, toStatusCode(error), unwrap(error));
+        }
+        return new WriteResult(nodeId, StatusCode.GOOD);
+      }));
+    }
+    return collect(writes);
+  }
+
+  /**
+   * Gets the status code the server reported for a failed request, or
+   * {@code Bad_UnexpectedError} if the error didn't come from the server.
+   */
+  private static StatusCode toStatusCode(Throwable error) {
+    return UaException.extractStatusCode(error).orElseGet(() -> new StatusCode(StatusCodes.Bad_UnexpectedError));
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+  }
+
+  private CompletableFuture<Integer> getMaxNodesPerRead(UaClient uaClient) {
+    if (serverMaxNodesPerRead >= 0) {
+      return CompletableFuture.completedFuture(effectiveLimit(serverMaxNodesPerRead));
+    }
+    return readOperationLimit(uaClient, Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerRead)
+        .thenApply(limit -> {
+          serverMaxNodesPerRead = limit;
+          return effectiveLimit(limit);
+        });
+  }
+
+  private CompletableFuture<Integer> getMaxNodesPerWrite(UaClient uaClient) {
+    if (serverMaxNodesPerWrite >= 0) {
+      return CompletableFuture.completedFuture(effectiveLimit(serverMaxNodesPerWrite));
+    }
+    return readOperationLimit(uaClient, Identifiers.Server_ServerCapabilities_OperationLimits_MaxNodesPerWrite)
+        .thenApply(limit -> {
+          serverMaxNodesPerWrite = limit;
+          return effectiveLimit(limit);
+        });
+  }
+
+  private int effectiveLimit(int serverLimit) {
+    return serverLimit > 0 ? Math.min(serverLimit, maxNodesPerRequest) : maxNodesPerRequest;
+  }
+
+  /**
+   * Reads one of the server's operation limits.
+   *
+   * @return A future which completes with the limit or {@code 0} if the server
+   *         doesn't announce one. It never completes exceptionally.
+   */
+  private CompletableFuture<Integer> readOperationLimit(UaClient uaClient,
+      org.eclipse.milo.opcua.stack.core.types.builtin.NodeId limitNodeId) {
+    return uaClient.readValue(0.0, TimestampsToReturn.Neither, limitNodeId).handle((dataValue, error) -> {
+      if (error != null) {
+        logger.debug("Failed to read operation limit '{}' from {}.", limitNodeId, endpoint, error);
+        return 0;
+      }
+      Object limit = dataValue.getValue().getValue();
+      if (limit instanceof UInteger) {
+        return (int) Math.min(((UInteger) limit).longValue(), Integer.MAX_VALUE);
+      }
+      return 0;
+    });
+  }
+
+  private static List<org.eclipse.milo.opcua.stack.core.types.builtin.NodeId> toMiloNodeIds(List<NodeId> nodeIds) {
+    List<org.eclipse.milo.opcua.stack.core.types.builtin.NodeId> miloIds = new ArrayList<>(nodeIds.size());
+    for (NodeId nodeId : nodeIds) {
+      miloIds.add(nodeId.getInternalId());
+    }
+    return miloIds;
+  }
+
+  /**
+   * Splits a list into consecutive batches of at most {@code batchSize}
+   * elements, keeping their order.
+   */
+  static <T> List<List<T>> partition(List<T> items, int batchSize) {
+    List<List<T>> batches = new ArrayList<>((items.size() + batchSize - 1) / batchSize);
+    for (int start = 0; start < items.size(); start += batchSize) {
+      batches.add(items.subList(start, Math.min(start + batchSize, items.size())));
+    }
+    return batches;
+  }
+
+  private static <T> CompletableFuture<List<T>> collect(List<CompletableFuture<T>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+      List<T> results = new ArrayList<>(futures.size());
+      for (CompletableFuture<T> future : futures) {
+        results.add(future.join());
+      }
+      return results;
+    });
+  }
+
+  /**
+   * Relays the outcome of {@code source} to a new future which is completed on
+   * the given executor. Failures are unwrapped and reported as
+   * {@link OpcUaException}.
+   */
+  private static <T> CompletableFuture<T> completeOn(CompletableFuture<T> source, Executor executor) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    source.whenCompleteAsync((value, error) -> {
+      if (error != null) {
+        result.completeExceptionally(toOpcUaException(error));
+      } else {
+        result.complete(value);
+      }
+    }, executor);
+    return result;
+  }
+
+  private static OpcUaException toOpcUaException(Throwable error) {
+    while ((error instanceof CompletionException || error instanceof ExecutionException)
+        && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error instanceof OpcUaException ? (OpcUaException) error : new OpcUaException(error);
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpcUaException(e);
+    } catch (ExecutionException e) {
+      throw toOpcUaException(e);
+    }
+  }
+
+  /**
+   * Handle of a monitored item created by
+   * {@link OpcUaClient#monitorValue(NodeId, SubscriptionSettings, Consumer)}.
+   */
+  static final class Monitor {
+    private final UaSubscription subscription;
+    private final UaMonitoredItem item;
+
+    private Monitor(UaSubscription subscription, UaMonitoredItem item) {
+      this.subscription = subscription;
+      this.item = item;
+    }
+  }
+
+  /**
+   * One of the BaSyx clients, i.e. OPC UA sessions, wrapped by this client.
+   */
+  private static final class Session {
+    private final IOpcUaClient client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean healthy = true;
+
+    private Session(IOpcUaClient client) {
+      this.client = client;
+    }
+
+    private void release() {
+      inFlight.decrementAndGet();
+    }
   }
 }
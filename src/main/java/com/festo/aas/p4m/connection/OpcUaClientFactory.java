@@ -15,6 +15,9 @@
 package com.festo.aas.p4m.connection;
 
 import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.festo.aas.p4m.security.CertificateProvider;
 import com.festo.aas.p4m.security.SelfSignedCertificateProvider;
@@ -26,6 +29,10 @@ import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
  * Creates instances of {@link OpcUaClient}.
  */
 public final class OpcUaClientFactory {
+  /**
+   * The interval between two health checks of a pooled client's sessions.
+   */
+  public static final Duration DEFAULT_HEALTH_CHECK_INTERVAL = Duration.ofSeconds(10);
 
   private OpcUaClientFactory() {
     throw new AssertionError("Cannot create instances.");
@@ -46,6 +53,47 @@ public final class OpcUaClientFactory {
     return new OpcUaClient(client);
   }
 
+  /**
+   * Creates a new OPC UA client for the given endpoint which spreads its
+   * requests over a pool of sessions.
+   *
+   * <p>
+   * A single OPC UA session processes requests one after another on many
+   * servers. Use a pooled client when an endpoint receives many concurrent
+   * requests, e.g. from several AAS clients at once. Each request is dispatched
+   * to the session with the fewest requests in flight. The sessions' health is
+   * checked every {@link #DEFAULT_HEALTH_CHECK_INTERVAL}.
+   *
+   * <p>
+   * Sessions are established lazily, when they receive their first request or
+   * health check.
+   *
+   * @param endpointUrl   The endpoint the client will connect to.
+   * @param configuration The configuration for the OPC UA client.
+   * @param poolSize      The number of sessions to open to the endpoint.
+   *
+   * @return A preconfigured, pooled {@link OpcUaClient}.
+   */
+  public static OpcUaClient createPooledClient(String endpointUrl, ClientConfiguration configuration,
+      int poolSize) {
+    if (poolSize <= 0) {
+      throw new IllegalArgumentException("poolSize must be positive.");
+    }
+
+    List<IOpcUaClient> sessions = new ArrayList<>(poolSize);
+    for (int i = 0; i < poolSize; i++) {
+      IOpcUaClient client = IOpcUaClient.create(endpointUrl);
+      client.setConfiguration(configuration);
+      sessions.add(client);
+    }
+
+    OpcUaClient client = new OpcUaClient(sessions);
+    if (poolSize > 1) {
+      client.startHealthChecks(DEFAULT_HEALTH_CHECK_INTERVAL);
+    }
+    return client;
+  }
+
   /**
    * Generates a default client configuration for the OPC UA client with the
    * application certificate
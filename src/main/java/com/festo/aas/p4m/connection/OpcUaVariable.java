@@ -15,16 +15,29 @@
 package com.festo.aas.p4m.connection;
 
 import java.time.Duration;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.eclipse.basyx.vab.exception.provider.ProviderException;
 import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
 import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
 import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
-import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedByte;
-import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
-import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedLong;
-import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedShort;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,17 +50,51 @@ import org.slf4j.LoggerFactory;
  * fetching to increase
  * performance. The cache duration is set during object initialization and can
  * not be changed
- * afterwards.
+ * afterwards. A {@link CachePolicy} additionally allows serving stale values
+ * while they are refreshed in the background.
+ *
+ * <p>
+ * Concurrent reads are coalesced: If several threads find the cache expired at
+ * the same time, only one of them reads the value from the server. The others
+ * wait for that read and receive its result.
+ *
+ * <p>
+ * Writes can optionally be suppressed if they wouldn't change the value (see
+ * {@link #setWriteDeduplication(boolean)} and
+ * {@link #setWriteDeadband(double)}) or coalesced, so that only the latest
+ * value of a burst is written (see
+ * {@link #setWriteCoalescingWindow(Duration, Consumer)}). How a successful write
+ * updates the cache is decided by the {@link WritePolicy}.
  */
 public class OpcUaVariable implements PropertyValueConsumer, PropertyValueSupplier {
   private final Logger logger = LoggerFactory.getLogger(this.getClass());
   private final OpcUaClient client;
   private final NodeId nodeId;
-  private final Duration cacheDuration;
+  private final CachePolicy cachePolicy;
   private final Class<?> dataType;
+  private final ValueCodec codec;
+
+  /**
+   * Returned by {@link #peekValue()} if the value must be read from the server.
+   */
+  static final Object NOT_CACHED = new Object();
+
+  private static final Object NO_PENDING_WRITE = new Object();
 
-  private Instant cacheTimestamp = Instant.MIN;
-  private Object cachedValue;
+  private final AtomicReference<CompletableFuture<Object>> inFlightRead = new AtomicReference<>();
+  private final AtomicReference<CacheEntry> cache = new AtomicReference<>(CacheEntry.EMPTY);
+  private final ValueChangeNotifier notifier = new ValueChangeNotifier(this);
+  private final AtomicReference<Object> pendingWrite = new AtomicReference<>(NO_PENDING_WRITE);
+  private final AtomicLong suppressedWrites = new AtomicLong();
+  private final Object flushLock = new Object();
+  // The last coalesced write; the next one is only sent once it completed.
+  private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+  private volatile boolean writeDeduplication;
+  private volatile double writeDeadband;
+  private volatile Duration writeCoalescingWindow = Duration.ZERO;
+  private volatile Consumer<? super RuntimeException> coalescedWriteFailureHandler;
+  private volatile WritePolicy writePolicy = WritePolicy.WRITE_THROUGH;
 
   /**
    * Creates a new OPC UA variable connecting to the given node using the given
@@ -80,10 +127,27 @@ public class OpcUaVariable implements PropertyValueConsumer, PropertyValueSuppli
    *                      next call to {@link #getValue()}.
    */
   public OpcUaVariable(OpcUaClient client, NodeId nodeId, Class<?> dataType, Duration cacheDuration) {
+    this(client, nodeId, dataType, CachePolicy.expireAfter(cacheDuration));
+  }
+
+  /**
+   * Creates a new OPC UA variable connecting to the given node using the given
+   * client.
+   *
+   * @param client      The client object to use for communication.
+   * @param nodeId      The node whose value to read or write.
+   * @param dataType    The class matching the type of the OPC UA variable. See
+   *                    table at
+   *                    {@link IOpcUaClient}.
+   * @param cachePolicy Decides when the cached value is returned and when it is
+   *                    refetched.
+   */
+  public OpcUaVariable(OpcUaClient client, NodeId nodeId, Class<?> dataType, CachePolicy cachePolicy) {
     this.client = client;
     this.nodeId = nodeId;
-    this.cacheDuration = cacheDuration;
+    this.cachePolicy = Objects.requireNonNull(cachePolicy);
     this.dataType = dataType;
+    this.codec = ValueCodec.forType(dataType);
   }
 
   /**
@@ -95,82 +159,784 @@ public class OpcUaVariable implements PropertyValueConsumer, PropertyValueSuppli
     return nodeId;
   }
 
+  /**
+   * Gets the client used to read or write the variable.
+   *
+   * @return The variable's client.
+   */
+  public OpcUaClient getClient() {
+    return client;
+  }
+
+  /**
+   * Gets the class matching the type of the OPC UA variable.
+   *
+   * @return The variable's data type.
+   */
+  public Class<?> getDataType() {
+    return dataType;
+  }
+
+  /**
+   * Gets the policy deciding when the cached value is returned.
+   *
+   * @return The variable's cache policy.
+   */
+  public CachePolicy getCachePolicy() {
+    return cachePolicy;
+  }
+
+  /**
+   * Gets the current values of several OPC UA variables at once.
+   *
+   * <p>
+   * Variables whose cached value is still valid are served from their cache. All
+   * other variables are grouped by their {@link OpcUaClient} and fetched with a
+   * single batched read per client (see {@link OpcUaClient#readValues(List)}).
+   * The batches of all clients are sent at once, so reading from several
+   * servers takes as long as the slowest of them. The fetched values are cached
+   * by each variable as if {@link #getValue()} had been called.
+   *
+   * @param variables The variables to read.
+   *
+   * @return The variables' values in the same order as {@code variables}.
+   *
+   * @throws ProviderException if any of the variables couldn't be read or
+   *                           returned a value of the wrong type.
+   */
+  public static List<Object> getValues(List<? extends OpcUaVariable> variables) throws ProviderException {
+    Object[] values = new Object[variables.size()];
+    Map<OpcUaClient, List<Integer>> pendingByClient = new HashMap<>();
+    Map<Integer, CompletableFuture<Object>> ownReads = new HashMap<>();
+    Map<Integer, CompletableFuture<Object>> foreignReads = new HashMap<>();
+    long[] writeSequences = new long[values.length];
+
+    for (int i = 0; i < values.length; i++) {
+      OpcUaVariable variable = variables.get(i);
+      CacheEntry entry = variable.cache.get();
+      writeSequences[i] = entry.writeSequence;
+      if (variable.cacheValid(entry)) {
+        variable.logger.debug("Variable '{}' read from cache", variable.nodeId);
+        values[i] = entry.value;
+        variable.refreshIfDue(entry);
+        continue;
+      }
+
+      CompletableFuture<Object> read = new CompletableFuture<>();
+      CompletableFuture<Object> foreignRead = variable.beginRead(read);
+      if (foreignRead != null) {
+        foreignReads.put(i, foreignRead);
+      } else {
+        ownReads.put(i, read);
+        pendingByClient.computeIfAbsent(variable.client, k -> new ArrayList<>()).add(i);
+      }
+    }
+
+    Map<OpcUaClient, CompletableFuture<List<ReadResult>>> batches = new HashMap<>();
+    for (Map.Entry<OpcUaClient, List<Integer>> pending : pendingByClient.entrySet()) {
+      List<Integer> indices = pending.getValue();
+      List<NodeId> nodeIds = new ArrayList<>(indices.size());
+      for (int index : indices) {
+        OpcUaVariable variable = variables.get(index);
+        nodeIds.add(variable.nodeId);
+      }
+
+      CompletableFuture<List<ReadResult>> batch;
+      try {
+        // Completes on the thread receiving the response, as this thread waits for it anyway.
+        batch = pending.getKey().readValuesAsync(nodeIds, Runnable::run);
+      } catch (RuntimeException e) {
+        batch = new CompletableFuture<>();
+        batch.completeExceptionally(e);
+      }
+      batches.put(pending.getKey(), batch);
+    }
+
+    RuntimeException failure = null;
+    for (Map.Entry<OpcUaClient, List<Integer>> pending : pendingByClient.entrySet()) {
+      List<Integer> indices = pending.getValue();
+      List<ReadResult> results = null;
+      RuntimeException clientFailure = null;
+      try {
+        results = awaitRead(batches.get(pending.getKey()));
+      } catch (RuntimeException e) {
+        clientFailure = e;
+        failure = failure == null ? e : failure;
+      }
+
+      for (int i = 0; i < indices.size(); i++) {
+        int index = indices.get(i);
+        OpcUaVariable variable = variables.get(index);
+        CompletableFuture<Object> read = ownReads.get(index);
+        try {
+          if (results == null) {
+            throw clientFailure;
+          }
+          values[index] = variable.acceptValue(results.get(i).getValue(), writeSequences[index]);
+          read.complete(values[index]);
+        } catch (RuntimeException e) {
+          read.completeExceptionally(e);
+          failure = failure == null ? e : failure;
+        } finally {
+          variable.endRead(read);
+        }
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+
+    for (Map.Entry<Integer, CompletableFuture<Object>> foreignRead : foreignReads.entrySet()) {
+      values[foreignRead.getKey()] = awaitRead(foreignRead.getValue());
+    }
+
+    return Arrays.asList(values);
+  }
+
   @Override
   public Object getValue() throws ProviderException {
-    if (!cacheValid()) {
+    Object value = peekValue();
+    if (value == NOT_CACHED) {
       logger.debug("Variable '{}' not cached.", nodeId);
-      fetchValue();
-    } else {
-      logger.debug("Variable '{}' read from cache", nodeId);
+      return fetchValue();
     }
 
-    return cachedValue;
+    logger.debug("Variable '{}' read from cache", nodeId);
+    return value;
   }
 
+  /**
+   * Gets the cached value without ever reading from the server, starting a
+   * background refresh if the cache policy asks for it.
+   *
+   * @return The cached value, or {@link #NOT_CACHED} if the cache can't serve
+   *         the value.
+   */
+  Object peekValue() {
+    CacheEntry entry = cache.get();
+    if (!cacheValid(entry)) {
+      return NOT_CACHED;
+    }
+
+    refreshIfDue(entry);
+    return entry.value;
+  }
+
+  /**
+   * Writes new values to several OPC UA variables at once.
+   *
+   * <p>
+   * The variables are grouped by their {@link OpcUaClient} and written with a
+   * single batched write per client (see {@link OpcUaClient#writeValues(Map)}).
+   * All values are type-checked before anything is written. Values which a
+   * variable's deduplication or deadband suppresses are skipped; coalescing
+   * windows don't apply to batched writes.
+   *
+   * @param values The new values by the variables to write them to.
+   *
+   * @throws IllegalArgumentException if any value doesn't match its variable's
+   *                                  configured type. Nothing is written in this
+   *                                  case.
+   * @throws ProviderException        if any of the variables couldn't be
+   *                                  written. The other variables are written
+   *                                  nonetheless.
+   */
+  public static void applyValues(Map<? extends OpcUaVariable, ?> values) throws ProviderException {
+    List<OpcUaVariable> readbacks = new ArrayList<>();
+    Map<OpcUaVariable, RuntimeException> failures = writeValues(values, readbacks);
+
+    RuntimeException readbackFailure = null;
+    try {
+      readBack(readbacks);
+    } catch (RuntimeException e) {
+      readbackFailure = e;
+    }
+
+    if (failures.size() == 1) {
+      throw failures.values().iterator().next();
+    } else if (!failures.isEmpty()) {
+      throw new ProviderException("Writing " + failures.size() + " OPC UA variables failed: " + failures.values());
+    } else if (readbackFailure != null) {
+      throw readbackFailure;
+    }
+  }
+
+  /**
+   * Writes the values of multiple variables like {@link #applyValues(Map)}, but
+   * reports failures per variable instead of throwing.
+   *
+   * <p>
+   * A failed batch doesn't keep the batches of other clients from being
+   * written. Variables which were written and must be read back because of their
+   * {@link WritePolicy} are added to {@code readbacks}; reading them is up to
+   * the caller.
+   *
+   * @param  values    The variables to write, mapped to the values to write.
+   * @param  readbacks Receives the variables which must be read back.
+   *
+   * @return           The variables which couldn't be written, mapped to the
+   *                   reason.
+   *
+   * @throws IllegalArgumentException If any value doesn't match its variable's
+   *                                  data type. Nothing is written in that case.
+   */
+  static Map<OpcUaVariable, RuntimeException> writeValues(Map<? extends OpcUaVariable, ?> values,
+      List<OpcUaVariable> readbacks) {
+    Map<OpcUaClient, Map<NodeId, Object>> valuesByClient = new HashMap<>();
+    Map<OpcUaClient, Map<NodeId, OpcUaVariable>> variablesByClient = new HashMap<>();
+
+    // Encodes every value first, so a batch which fails the type check doesn't
+    // count any of its values as suppressed.
+    Map<OpcUaVariable, Object> mappedValues = new LinkedHashMap<>();
+    for (Map.Entry<? extends OpcUaVariable, ?> entry : values.entrySet()) {
+      OpcUaVariable variable = entry.getKey();
+      mappedValues.put(variable, variable.prepareWrite(entry.getValue()));
+    }
+
+    for (Map.Entry<OpcUaVariable, Object> entry : mappedValues.entrySet()) {
+      OpcUaVariable variable = entry.getKey();
+      Object mappedValue = entry.getValue();
+      if (variable.suppressWrite(mappedValue)) {
+        continue;
+      }
+      valuesByClient.computeIfAbsent(variable.client, k -> new LinkedHashMap<>()).put(variable.nodeId, mappedValue);
+      variablesByClient.computeIfAbsent(variable.client, k -> new HashMap<>()).put(variable.nodeId, variable);
+    }
+
+    Map<OpcUaVariable, RuntimeException> failures = new LinkedHashMap<>();
+    for (Map.Entry<OpcUaClient, Map<NodeId, Object>> clientValues : valuesByClient.entrySet()) {
+      Map<NodeId, OpcUaVariable> variables = variablesByClient.get(clientValues.getKey());
+      List<WriteResult> results;
+      try {
+        results = clientValues.getKey().writeValues(clientValues.getValue());
+      } catch (RuntimeException e) {
+        for (OpcUaVariable variable : variables.values()) {
+          failures.put(variable, e);
+        }
+        continue;
+      }
+
+      for (WriteResult result : results) {
+        OpcUaVariable variable = variables.get(result.getNodeId());
+        try {
+          result.check();
+        } catch (OpcUaException e) {
+          failures.put(variable, e);
+          continue;
+        }
+
+        if (variable.completeWrite(clientValues.getValue().get(result.getNodeId()))) {
+          readbacks.add(variable);
+        }
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * Checks whether a value can be written to this variable, without writing it.
+   *
+   * @param  value                    The value to check.
+   *
+   * @throws IllegalArgumentException If the value doesn't match the variable's
+   *                                  data type.
+   */
+  void checkValue(Object value) {
+    codec.encode(value);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   * If a {@link #setWriteCoalescingWindow(Duration, Consumer) coalescing
+   * window} is set, this method returns before the value was written. Write
+   * errors are then reported to the failure handler instead of being thrown.
+   */
   @Override
   public void applyValue(Object value) throws ProviderException {
-    logger.debug("Writing '{}' to '{}' on {}.", value, nodeId, client.endpoint);
-
-    if (!isCorrectType(value)) {
-      String exceptionMessage = String.format(
-          "Mismatch between configured type (%s) and type of given value (%s)", dataType, value.getClass());
-      throw new IllegalArgumentException(exceptionMessage);
+    Object mappedValue = prepareWrite(value);
+    if (suppressWrite(mappedValue)) {
+      return;
     }
 
-    value = mapBaSyxToUnsigned(value);
+    Duration window = writeCoalescingWindow;
+    if (window.isZero()) {
+      client.writeValue(nodeId, mappedValue);
+      if (completeWrite(mappedValue)) {
+        readBack(Collections.singletonList(this));
+      }
+      return;
+    }
 
-    client.writeValue(nodeId, value);
-    cacheTimestamp = Instant.now();
+    if (pendingWrite.getAndSet(mappedValue) == NO_PENDING_WRITE) {
+      SharedExecutors.scheduler().schedule(this::flushPendingWrite, window.toNanos(), TimeUnit.NANOSECONDS);
+    } else {
+      logger.debug("Superseded pending write to '{}'.", nodeId);
+      suppressedWrites.incrementAndGet();
+    }
   }
 
-  private boolean cacheValid() {
-    return cacheTimestamp.plus(cacheDuration).isAfter(Instant.now());
+  /**
+   * Enables or disables skipping writes of the value which is already cached.
+   * Values are compared with {@link Objects#deepEquals(Object, Object)}. Only a
+   * valid cached value is taken into account. Disabled by default.
+   *
+   * @param enabled Whether to skip writes which wouldn't change the value.
+   */
+  public void setWriteDeduplication(boolean enabled) {
+    writeDeduplication = enabled;
   }
 
-  private void fetchValue() throws OpcUaException {
-    logger.debug("Reading value for '{}' from {}.", nodeId, client.endpoint);
-    Object value = client.readValue(nodeId);
+  /**
+   * Sets a deadband for numeric values. A write is skipped if the new value
+   * differs from the valid cached value by no more than the deadband. Defaults
+   * to {@code 0}, i.e. no deadband.
+   *
+   * @param deadband The minimum absolute change required for a write.
+   */
+  public void setWriteDeadband(double deadband) {
+    if (deadband < 0 || Double.isNaN(deadband)) {
+      throw new IllegalArgumentException("deadband must not be negative.");
+    }
+    writeDeadband = deadband;
+  }
 
-    if (!isCorrectType(value)) {
-      String exceptionMessage = String.format(
-          "Mismatch between configured type (%s) and type received from OPC UA server (%s)", dataType, value
-              .getClass());
-      throw new ProviderException(exceptionMessage);
+  /**
+   * Sets a window in which consecutive calls to {@link #applyValue(Object)} are
+   * coalesced. The first call of a burst starts the window; when it ends, only
+   * the latest value is written. Defaults to {@link Duration#ZERO}, i.e. every
+   * value is written immediately.
+   *
+   * <p>
+   * Coalescing is lossy: superseded values are never written, and
+   * {@link #applyValue(Object)} returns before the latest value was written, so
+   * it can't report whether the write succeeded. Failures of coalesced writes,
+   * including reading the value back after them, are passed to
+   * {@code failureHandler} instead. It is called on the thread which completed
+   * the write and must not block.
+   *
+   * <p>
+   * At most one coalesced write is sent at a time. If a window ends while the
+   * previous write is still in progress, the latest value is written once that
+   * write has completed, so an older value can never overwrite a newer one.
+   *
+   * @param window         The coalescing window.
+   * @param failureHandler Receives the failures of coalesced writes.
+   */
+  public void setWriteCoalescingWindow(Duration window, Consumer<? super RuntimeException> failureHandler) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("window must not be negative.");
     }
+    coalescedWriteFailureHandler = Objects.requireNonNull(failureHandler);
+    writeCoalescingWindow = window;
+  }
 
-    cachedValue = mapUnsignedToBaSyx(value);
-    cacheTimestamp = Instant.now();
+  /**
+   * Sets how the cache is updated after a successful write. Defaults to
+   * {@link WritePolicy#WRITE_THROUGH}.
+   *
+   * @param policy The write policy.
+   */
+  public void setWritePolicy(WritePolicy policy) {
+    writePolicy = Objects.requireNonNull(policy);
   }
 
-  private Object mapUnsignedToBaSyx(Object value) {
-    if (dataType == UnsignedByte.class) {
-      return ((UnsignedByte) value).toShort();
-    } else if (dataType == UnsignedShort.class) {
-      return ((UnsignedShort) value).toInt();
-    } else if (dataType == UnsignedInteger.class) {
-      return ((UnsignedInteger) value).toLong();
-    } else if (dataType == UnsignedLong.class) {
-      return ((UnsignedLong) value).toBigInteger();
+  /**
+   * Gets the number of writes which were skipped by deduplication, the deadband
+   * or coalescing.
+   *
+   * @return The number of suppressed writes.
+   */
+  public long getSuppressedWriteCount() {
+    return suppressedWrites.get();
+  }
+
+  /**
+   * Adds a listener which is notified whenever the value of this variable
+   * changes. Changes are detected when the value is read from the server or
+   * written.
+   *
+   * <p>
+   * The listener is called on a shared background thread pool and may lag
+   * behind by up to {@value ValueChangeNotifier#DEFAULT_QUEUE_CAPACITY}
+   * changes before changes are merged.
+   *
+   * @param listener The listener to add.
+   */
+  public void addValueChangeListener(ValueChangeListener listener) {
+    addValueChangeListener(listener, SharedExecutors.blockingExecutor(), ValueChangeNotifier.DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Adds a listener which is notified whenever the value of this variable
+   * changes.
+   *
+   * <p>
+   * Changes which the listener hasn't received yet are queued. If more than
+   * {@code queueCapacity} changes are queued, the oldest ones are merged, so the
+   * listener always receives the latest value but may miss intermediate ones.
+   *
+   * @param listener      The listener to add.
+   * @param executor      The executor on which the listener is called.
+   * @param queueCapacity The maximum number of undelivered changes.
+   */
+  public void addValueChangeListener(ValueChangeListener listener, Executor executor, int queueCapacity) {
+    notifier.addListener(listener, executor, queueCapacity);
+  }
+
+  /**
+   * Removes a listener added with
+   * {@link #addValueChangeListener(ValueChangeListener)}. Changes which are
+   * already queued may still be delivered.
+   *
+   * @param listener The listener to remove.
+   *
+   * @return Whether the listener was registered.
+   */
+  public boolean removeValueChangeListener(ValueChangeListener listener) {
+    return notifier.removeListener(listener);
+  }
+
+  private Object prepareWrite(Object value) {
+    logger.debug("Writing '{}' to '{}' on {}.", value, nodeId, client.endpoint);
+    return codec.encode(value);
+  }
+
+  /**
+   * Decides whether writing the given encoded value can be skipped because it
+   * equals the value which is about to be written or, without such a coalesced
+   * write, the cached value, or lies within the deadband. Counts suppressed
+   * writes.
+   */
+  private boolean suppressWrite(Object mappedValue) {
+    double deadband = writeDeadband;
+    if (!writeDeduplication && deadband == 0) {
+      return false;
+    }
+
+    Object reference;
+    Object pending = pendingWrite.get();
+    if (pending != NO_PENDING_WRITE) {
+      reference = codec.decode(pending);
     } else {
-      return value;
+      CacheEntry entry = cache.get();
+      if (!cacheValid(entry)) {
+        return false;
+      }
+      reference = entry.value;
+    }
+
+    Object value = codec.decode(mappedValue);
+    boolean suppress;
+    if (deadband > 0 && value instanceof Number && reference instanceof Number) {
+      double difference = ((Number) value).doubleValue() - ((Number) reference).doubleValue();
+      suppress = Math.abs(difference) <= deadband;
+    } else {
+      suppress = writeDeduplication && Objects.deepEquals(value, reference);
+    }
+
+    if (suppress) {
+      logger.debug("Skipped writing '{}' to '{}', value is unchanged.", value, nodeId);
+      suppressedWrites.incrementAndGet();
+    }
+    return suppress;
+  }
+
+  private void flushPendingWrite() {
+    synchronized (flushLock) {
+      // The pending value is only taken once the previous write completed, so
+      // values which arrive meanwhile replace it instead of racing it.
+      lastFlush = lastFlush.handle((result, error) -> null).thenCompose(ignored -> writePendingValue());
+    }
+  }
+
+  private CompletableFuture<Void> writePendingValue() {
+    Object mappedValue = pendingWrite.getAndSet(NO_PENDING_WRITE);
+    if (mappedValue == NO_PENDING_WRITE) {
+      return CompletableFuture.completedFuture(null);
     }
+
+    Consumer<? super RuntimeException> failureHandler = coalescedWriteFailureHandler;
+    return client.writeValueAsync(nodeId, mappedValue).thenCompose(result -> {
+      if (!completeWrite(mappedValue)) {
+        return CompletableFuture.completedFuture(null);
+      }
+      // Reads the value back without blocking the thread which completed the write.
+      long writeSequence = cache.get().writeSequence;
+      return client.readValueAsync(nodeId).thenAccept(value -> acceptValue(value, writeSequence));
+    }).whenComplete((result, error) -> {
+      if (error != null) {
+        logger.debug("Coalesced write of '{}' to '{}' failed.", mappedValue, nodeId, error);
+        failureHandler.accept(toRuntimeException(error));
+      }
+    });
+  }
+
+  private static RuntimeException toRuntimeException(Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    return cause instanceof RuntimeException ? (RuntimeException) cause : new ProviderException(cause);
   }
 
-  private Object mapBaSyxToUnsigned(Object value) {
-    if (dataType == UnsignedByte.class) {
-      return ((UnsignedByte) value).toShort();
-    } else if (dataType == UnsignedShort.class) {
-      return ((UnsignedShort) value).toInt();
-    } else if (dataType == UnsignedInteger.class) {
-      return ((UnsignedInteger) value).toLong();
-    } else if (dataType == UnsignedLong.class) {
-      return ((UnsignedLong) value).toBigInteger();
+  /**
+   * Updates the cache after the given encoded value was written successfully,
+   * according to the write policy.
+   *
+   * @return Whether the value must be read back from the server.
+   */
+  private boolean completeWrite(Object mappedValue) {
+    // Every write advances the write sequence, so reads which started before
+    // it are dropped instead of caching the value from before the write.
+    WritePolicy policy = writePolicy;
+    if (policy == WritePolicy.WRITE_AND_READBACK) {
+      // The read back value is published instead of the written one.
+      cache.updateAndGet(CacheEntry::invalidate);
+      return true;
+    }
+
+    Object value = codec.decode(mappedValue);
+    if (policy == WritePolicy.WRITE_INVALIDATE) {
+      cache.updateAndGet(CacheEntry::invalidate);
     } else {
+      long now = System.nanoTime();
+      cache.updateAndGet(entry -> new CacheEntry(value, now, StatusCode.GOOD, entry.writeSequence + 1));
+    }
+    notifier.publish(value);
+    return false;
+  }
+
+  /**
+   * Reads the given variables from the server after a write with one batched
+   * read per client, bypassing their caches and any read in flight, which might
+   * have started before the write.
+   */
+  static void readBack(List<OpcUaVariable> variables) throws ProviderException {
+    readFromServer(variables);
+  }
+
+  /**
+   * Reads the given variables from the server with one batched read per client,
+   * bypassing their caches and any read in flight. The values are cached as if
+   * {@link #getValue()} had read them.
+   *
+   * @param  variables The variables to read.
+   *
+   * @return           The values in the same order as {@code variables}.
+   */
+  static List<Object> readFromServer(List<? extends OpcUaVariable> variables) throws ProviderException {
+    Map<OpcUaClient, List<Integer>> indicesByClient = new HashMap<>();
+    for (int i = 0; i < variables.size(); i++) {
+      OpcUaVariable variable = variables.get(i);
+      indicesByClient.computeIfAbsent(variable.client, k -> new ArrayList<>()).add(i);
+    }
+
+    Object[] values = new Object[variables.size()];
+    for (Map.Entry<OpcUaClient, List<Integer>> clientIndices : indicesByClient.entrySet()) {
+      List<Integer> indices = clientIndices.getValue();
+      List<NodeId> nodeIds = new ArrayList<>(indices.size());
+      long[] writeSequences = new long[indices.size()];
+      for (int i = 0; i < indices.size(); i++) {
+        OpcUaVariable variable = variables.get(indices.get(i));
+        nodeIds.add(variable.nodeId);
+        writeSequences[i] = variable.cache.get().writeSequence;
+      }
+
+      List<ReadResult> results = clientIndices.getKey().readValues(nodeIds);
+      for (int i = 0; i < results.size(); i++) {
+        int index = indices.get(i);
+        values[index] = variables.get(index).acceptValue(results.get(i).getValue(), writeSequences[i]);
+      }
+    }
+    return Arrays.asList(values);
+  }
+
+  /**
+   * Whether the given cache snapshot may be returned without reading from the
+   * server.
+   */
+  boolean cacheValid(CacheEntry entry) {
+    return !entry.isEmpty() && cachePolicy.isUsable(System.nanoTime() - entry.timestamp);
+  }
+
+  /**
+   * Whether the given valid cache snapshot should be refreshed in the
+   * background.
+   */
+  boolean refreshDue(CacheEntry entry) {
+    return cachePolicy.isRefreshDue(System.nanoTime() - entry.timestamp);
+  }
+
+  /**
+   * Gets the current cache snapshot. Never {@code null}.
+   */
+  CacheEntry cacheEntry() {
+    return cache.get();
+  }
+
+  /**
+   * Starts a background read if the policy asks for it and no read is already in
+   * flight. Failures are logged; the next blocking read will report them.
+   */
+  private void refreshIfDue(CacheEntry entry) {
+    if (!refreshDue(entry)) {
+      return;
+    }
+
+    CompletableFuture<Object> read = new CompletableFuture<>();
+    if (beginRead(read) != null) {
+      return;
+    }
+
+    logger.debug("Refreshing '{}' from {} in the background.", nodeId, client.endpoint);
+    client.readValueAsync(nodeId).whenComplete((value, error) -> {
+      try {
+        if (error != null) {
+          throw error instanceof RuntimeException ? (RuntimeException) error : new ProviderException(error);
+        }
+        read.complete(acceptValue(value, entry.writeSequence));
+      } catch (RuntimeException e) {
+        logger.warn("Background refresh of '{}' failed.", nodeId, e);
+        read.completeExceptionally(e);
+      } finally {
+        endRead(read);
+      }
+    });
+  }
+
+  /**
+   * Reads the value from the server, unless another thread is already doing so.
+   * In that case, waits for the other thread's result instead.
+   */
+  private Object fetchValue() throws ProviderException {
+    CompletableFuture<Object> read = new CompletableFuture<>();
+    CompletableFuture<Object> foreignRead = beginRead(read);
+    if (foreignRead != null) {
+      logger.debug("Joining in-flight read for '{}'.", nodeId);
+      return awaitRead(foreignRead);
+    }
+
+    try {
+      logger.debug("Reading value for '{}' from {}.", nodeId, client.endpoint);
+      long writeSequence = cache.get().writeSequence;
+      Object value = acceptValue(client.readValue(nodeId), writeSequence);
+      read.complete(value);
       return value;
+    } catch (RuntimeException e) {
+      read.completeExceptionally(e);
+      throw e;
+    } finally {
+      endRead(read);
     }
   }
 
-  private boolean isCorrectType(Object value) {
-    return value.getClass() == dataType;
+  /**
+   * Registers {@code read} as the in-flight read of this variable.
+   *
+   * @return {@code null} if {@code read} was registered and the caller must
+   *         perform the read, complete the future and call
+   *         {@link #endRead(CompletableFuture)}. Otherwise, the read already in
+   *         flight.
+   */
+  private CompletableFuture<Object> beginRead(CompletableFuture<Object> read) {
+    while (true) {
+      CompletableFuture<Object> current = inFlightRead.get();
+      if (current != null) {
+        return current;
+      }
+      if (inFlightRead.compareAndSet(null, read)) {
+        return null;
+      }
+    }
+  }
+
+  private void endRead(CompletableFuture<Object> read) {
+    inFlightRead.compareAndSet(read, null);
+  }
+
+  private static <T> T awaitRead(CompletableFuture<T> read) throws ProviderException {
+    try {
+      return read.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProviderException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new ProviderException(cause);
+    }
+  }
+
+  /**
+   * Caches and publishes a value reported by the server, unless a write has
+   * completed since.
+   */
+  Object acceptValue(Object value) throws ProviderException {
+    return acceptValue(value, cache.get().writeSequence);
+  }
+
+  /**
+   * Caches and publishes a value read from the server, unless a write has
+   * completed since the read started. Such a read may have returned the value
+   * from before the write and is dropped.
+   *
+   * @param writeSequence The write sequence of the cache entry when the read
+   *                      started.
+   *
+   * @return The value read, or the written value if the read was dropped and
+   *         the write was cached.
+   */
+  Object acceptValue(Object value, long writeSequence) throws ProviderException {
+    Object decoded = codec.decode(value);
+    CacheEntry entry = new CacheEntry(decoded, System.nanoTime(), StatusCode.GOOD, writeSequence);
+    while (true) {
+      CacheEntry current = cache.get();
+      if (current.writeSequence != writeSequence) {
+        logger.debug("Dropped value of '{}' read before a write.", nodeId);
+        return current.isEmpty() ? decoded : current.value;
+      }
+      if (cache.compareAndSet(current, entry)) {
+        break;
+      }
+    }
+    notifier.publish(decoded);
+    return decoded;
+  }
+
+  /**
+   * Immutable snapshot of the cached value. Published atomically so that
+   * readers never see the value of one read combined with the timestamp of
+   * another.
+   */
+  static final class CacheEntry {
+    private static final StatusCode WAITING = new StatusCode(StatusCodes.Bad_WaitingForInitialData);
+    static final CacheEntry EMPTY = new CacheEntry(null, 0, WAITING, 0);
+
+    final Object value;
+    /** Time of the read in {@link System#nanoTime()} units. */
+    final long timestamp;
+    final StatusCode status;
+    /** Number of writes completed before this entry was created. */
+    final long writeSequence;
+
+    CacheEntry(Object value, long timestamp, StatusCode status, long writeSequence) {
+      this.value = value;
+      this.timestamp = timestamp;
+      this.status = status;
+      this.writeSequence = writeSequence;
+    }
+
+    /**
+     * Whether there is no cached value.
+     */
+    boolean isEmpty() {
+      return status == WAITING;
+    }
+
+    /**
+     * Creates an empty entry which records one more completed write.
+     */
+    CacheEntry invalidate() {
+      return new CacheEntry(null, 0, WAITING, writeSequence + 1);
+    }
   }
 }
@@ -15,22 +15,63 @@
 package com.festo.aas.p4m.connection;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
 import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Creates and caches {@link OpcUaVariable} instances.
  *
  * <p>
- * The cache is indexed by {@link OpcUaClient} and {@link NodeId}. The node's
- * data type or cache
- * duration are not taken into account for calculating cache hits or misses.
+ * The cache is indexed by {@link OpcUaClient} and {@link NodeId} only.
+ * Requesting a cached variable with a different data type, or as a typed
+ * variable like {@link DoubleOpcUaVariable} although it was cached as a plain
+ * {@link OpcUaVariable}, throws an {@link IllegalArgumentException}.
+ * Requesting it with a different cache policy or subscription returns the
+ * cached variable and logs a warning.
+ *
+ * <p>
+ * The cache is safe for concurrent use and never creates two variables for the
+ * same node. Requests for cached variables don't take any lock; only creating,
+ * evicting and dropping variables does. The cache can be bounded with
+ * {@link #setMaxSize(int)}, which evicts the least recently requested
+ * variables, and {@link #setMaxIdleTime(Duration)}. Variables of a client are
+ * dropped when the client is {@link OpcUaClient#close() closed}. Evicted
+ * variables keep working for everyone who still holds them; they are just no
+ * longer returned by this factory. Evicted or dropped
+ * {@link SubscribedOpcUaVariable}s are unsubscribed, so their monitored items
+ * don't keep them alive. Holders who read them again subscribe anew.
  */
 public class OpcUaVariableFactory {
-  private static final Map<OpcUaClient, Map<NodeId, OpcUaVariable>> cache = new HashMap<>();
+  private static final Logger logger = LoggerFactory.getLogger(OpcUaVariableFactory.class);
+
+  private static final Object lock = new Object();
+  // Lookups don't lock. Entries are only added and removed while holding lock.
+  private static final Map<Key, Entry> cache = new ConcurrentHashMap<>();
+  // Guarded by lock.
+  private static final Map<OpcUaClient, Runnable> closeListeners = new HashMap<>();
+  private static final AtomicLong hitCount = new AtomicLong();
+  private static final AtomicLong missCount = new AtomicLong();
+  private static final AtomicLong evictionCount = new AtomicLong();
+
+  private static volatile int maxSize;
+  private static volatile long maxIdleNanos = Long.MAX_VALUE;
+  // Guarded by lock.
+  private static ScheduledFuture<?> idleEviction;
 
   /**
    * Retrieves an {@link OpcUaVariable} matching the given client and nodeId from
@@ -48,9 +89,329 @@ public class OpcUaVariableFactory {
    */
   public static OpcUaVariable createIfNonexistent(OpcUaClient client, NodeId nodeId, Class<?> dataType,
       Duration cacheDuration) {
-    return cache
-        .computeIfAbsent(client, k -> new HashMap<>())
-        .computeIfAbsent(nodeId, k -> create(client, nodeId, dataType, cacheDuration));
+    return lookup(client, nodeId, dataType, CachePolicy.expireAfter(cacheDuration), OpcUaVariable.class,
+        () -> create(client, nodeId, dataType, cacheDuration));
+  }
+
+  /**
+   * Retrieves an {@link OpcUaVariable} matching the given client and nodeId from
+   * the cache or creates and caches a new one.
+   *
+   * @param client      The client used to retrieve this variable.
+   * @param nodeId      The nodeId of the variable.
+   * @param dataType    The variable's type. See {@link IOpcUaClient} for
+   *                    details.
+   * @param cachePolicy Decides when the variable's cached value is returned and
+   *                    when it is refetched.
+   *
+   * @return Either a new or cached {@code OpcUaVariable}.
+   */
+  public static OpcUaVariable createIfNonexistent(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      CachePolicy cachePolicy) {
+    return lookup(client, nodeId, dataType, cachePolicy, OpcUaVariable.class,
+        () -> create(client, nodeId, dataType, cachePolicy));
+  }
+
+  /**
+   * Retrieves an {@link OpcUaVariable} matching the given client and nodeId from
+   * the cache or creates and caches a new {@link SubscribedOpcUaVariable}.
+   *
+   * <p>
+   * Note that a cached variable is returned as-is, even if it isn't subscribed.
+   *
+   * @param client       The client used to retrieve this variable.
+   * @param nodeId       The nodeId of the variable.
+   * @param dataType     The variable's type. See {@link IOpcUaClient} for
+   *                     details.
+   * @param subscription The settings of the monitored item which pushes the
+   *                     variable's value.
+   *
+   * @return Either a new or cached {@code OpcUaVariable}.
+   */
+  public static OpcUaVariable createIfNonexistent(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      SubscriptionSettings subscription) {
+    return lookup(client, nodeId, dataType, subscription, OpcUaVariable.class,
+        () -> create(client, nodeId, dataType, subscription));
+  }
+
+  /**
+   * Retrieves a {@link DoubleOpcUaVariable} matching the given client and nodeId
+   * from the cache or creates and caches a new one.
+   *
+   * @param client      The client used to retrieve this variable.
+   * @param nodeId      The nodeId of the variable.
+   * @param dataType    Either {@code Double.class} or {@code Float.class}.
+   * @param cachePolicy Decides when the variable's cached value is returned and
+   *                    when it is refetched.
+   *
+   * @return Either a new or cached {@code DoubleOpcUaVariable}.
+   *
+   * @throws IllegalArgumentException if the node is already cached as a
+   *                                  variable which isn't a
+   *                                  {@code DoubleOpcUaVariable}.
+   */
+  public static DoubleOpcUaVariable createDoubleIfNonexistent(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      CachePolicy cachePolicy) {
+    return lookup(client, nodeId, dataType, cachePolicy, DoubleOpcUaVariable.class,
+        () -> new DoubleOpcUaVariable(client, nodeId, dataType, cachePolicy));
+  }
+
+  /**
+   * Retrieves a {@link LongOpcUaVariable} matching the given client and nodeId
+   * from the cache or creates and caches a new one.
+   *
+   * @param client      The client used to retrieve this variable.
+   * @param nodeId      The nodeId of the variable.
+   * @param dataType    The class matching the type of the OPC UA variable, e.g.
+   *                    {@code Integer.class} or {@code UnsignedShort.class}.
+   * @param cachePolicy Decides when the variable's cached value is returned and
+   *                    when it is refetched.
+   *
+   * @return Either a new or cached {@code LongOpcUaVariable}.
+   *
+   * @throws IllegalArgumentException if the node is already cached as a
+   *                                  variable which isn't a
+   *                                  {@code LongOpcUaVariable}.
+   */
+  public static LongOpcUaVariable createLongIfNonexistent(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      CachePolicy cachePolicy) {
+    return lookup(client, nodeId, dataType, cachePolicy, LongOpcUaVariable.class,
+        () -> new LongOpcUaVariable(client, nodeId, dataType, cachePolicy));
+  }
+
+  /**
+   * Retrieves a {@link BooleanOpcUaVariable} matching the given client and
+   * nodeId from the cache or creates and caches a new one.
+   *
+   * @param client      The client used to retrieve this variable.
+   * @param nodeId      The nodeId of the variable.
+   * @param cachePolicy Decides when the variable's cached value is returned and
+   *                    when it is refetched.
+   *
+   * @return Either a new or cached {@code BooleanOpcUaVariable}.
+   *
+   * @throws IllegalArgumentException if the node is already cached as a
+   *                                  variable which isn't a
+   *                                  {@code BooleanOpcUaVariable}.
+   */
+  public static BooleanOpcUaVariable createBooleanIfNonexistent(OpcUaClient client, NodeId nodeId,
+      CachePolicy cachePolicy) {
+    return lookup(client, nodeId, Boolean.class, cachePolicy, BooleanOpcUaVariable.class,
+        () -> new BooleanOpcUaVariable(client, nodeId, cachePolicy));
+  }
+
+  /**
+   * Gets a snapshot of all variables cached for the given client, from the
+   * least to the most recently requested one.
+   */
+  static List<OpcUaVariable> getCached(OpcUaClient client) {
+    List<Entry> entries = new ArrayList<>();
+    for (Map.Entry<Key, Entry> entry : cache.entrySet()) {
+      if (entry.getKey().client.equals(client)) {
+        entries.add(entry.getValue());
+      }
+    }
+    entries.sort(Entry.BY_LAST_ACCESS);
+
+    List<OpcUaVariable> result = new ArrayList<>();
+    for (Entry entry : entries) {
+      result.add(entry.variable);
+    }
+    return result;
+  }
+
+  /**
+   * Limits the number of cached variables. When the limit is exceeded, the
+   * variables which were least recently requested from this factory are
+   * evicted. Eviction sorts the cached variables, so it costs
+   * {@code O(n log n)} on each request which creates a variable beyond the
+   * limit.
+   *
+   * @param maxSize The maximum number of cached variables, or {@code 0} for no
+   *                limit, which is the default.
+   */
+  public static void setMaxSize(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must not be negative.");
+    }
+    List<OpcUaVariable> evicted = new ArrayList<>();
+    synchronized (lock) {
+      OpcUaVariableFactory.maxSize = maxSize;
+      evictExcess(evicted);
+    }
+    release(evicted);
+  }
+
+  /**
+   * Evicts variables which have neither been requested from this factory nor
+   * read from the server for the given time. Idle variables are evicted
+   * periodically in the background.
+   *
+   * @param maxIdleTime The maximum idle time, or {@code null} to never evict
+   *                    idle variables, which is the default.
+   */
+  public static void setMaxIdleTime(Duration maxIdleTime) {
+    if (maxIdleTime != null && (maxIdleTime.isNegative() || maxIdleTime.isZero())) {
+      throw new IllegalArgumentException("maxIdleTime must be positive.");
+    }
+
+    synchronized (lock) {
+      if (idleEviction != null) {
+        idleEviction.cancel(false);
+        idleEviction = null;
+      }
+      if (maxIdleTime == null) {
+        maxIdleNanos = Long.MAX_VALUE;
+        return;
+      }
+
+      maxIdleNanos = maxIdleTime.toNanos();
+      long period = Math.max(maxIdleNanos / 2, TimeUnit.MILLISECONDS.toNanos(1));
+      idleEviction = SharedExecutors.scheduler().scheduleAtFixedRate(OpcUaVariableFactory::evictIdle, period,
+          period, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Gets the current statistics of the cache.
+   *
+   * @return A snapshot of the statistics.
+   */
+  public static Statistics getStatistics() {
+    return new Statistics(cache.size(), hitCount.get(), missCount.get(), evictionCount.get());
+  }
+
+  private static <T extends OpcUaVariable> T lookup(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      Object configuration, Class<T> variableClass, Supplier<T> factory) {
+    Key key = new Key(client, nodeId);
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      T created = null;
+      List<OpcUaVariable> evicted = new ArrayList<>();
+      synchronized (lock) {
+        entry = cache.get(key);
+        if (entry == null) {
+          registerClient(client);
+          created = factory.get();
+          cache.put(key, new Entry(created));
+          missCount.incrementAndGet();
+          evictExcess(evicted);
+        }
+      }
+      release(evicted);
+      if (created != null) {
+        return created;
+      }
+    }
+
+    entry.lastAccess = System.nanoTime();
+    OpcUaVariable variable = entry.variable;
+    hitCount.incrementAndGet();
+    if (variable.getDataType() != dataType) {
+      String message = String.format("Variable '%s' is already cached with type %s, requested %s.", nodeId,
+          variable.getDataType(), dataType);
+      throw new IllegalArgumentException(message);
+    }
+    if (!variableClass.isInstance(variable)) {
+      String message = String.format("Variable '%s' is already cached as %s, requested %s.", nodeId,
+          variable.getClass().getSimpleName(), variableClass.getSimpleName());
+      throw new IllegalArgumentException(message);
+    }
+    if (!Objects.equals(configurationOf(variable), configuration)) {
+      logger.warn("Variable '{}' is already cached with {}, ignoring requested {}.", nodeId,
+          configurationOf(variable), configuration);
+    }
+    return variableClass.cast(variable);
+  }
+
+  private static Object configurationOf(OpcUaVariable variable) {
+    if (variable instanceof SubscribedOpcUaVariable) {
+      return ((SubscribedOpcUaVariable) variable).getSubscriptionSettings();
+    }
+    return variable.getCachePolicy();
+  }
+
+  /**
+   * Drops the client's variables once it is closed. Must hold {@link #lock}.
+   */
+  private static void registerClient(OpcUaClient client) {
+    if (!closeListeners.containsKey(client)) {
+      Runnable listener = () -> dropClient(client);
+      closeListeners.put(client, listener);
+      client.addCloseListener(listener);
+    }
+  }
+
+  private static void dropClient(OpcUaClient client) {
+    List<OpcUaVariable> dropped = new ArrayList<>();
+    synchronized (lock) {
+      client.removeCloseListener(closeListeners.remove(client));
+      Iterator<Map.Entry<Key, Entry>> entries = cache.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<Key, Entry> entry = entries.next();
+        if (entry.getKey().client.equals(client)) {
+          entries.remove();
+          dropped.add(entry.getValue().variable);
+        }
+      }
+    }
+    release(dropped);
+    logger.debug("Dropped {} cached variables of closed client {}.", dropped.size(), client.endpoint);
+  }
+
+  /**
+   * Evicts the least recently requested variables until the size limit is met.
+   * Must hold {@link #lock}.
+   *
+   * @param evicted Receives the evicted variables, which must be
+   *                {@link #release(List) released} after giving up the lock.
+   */
+  private static void evictExcess(List<OpcUaVariable> evicted) {
+    int limit = maxSize;
+    if (limit == 0 || cache.size() <= limit) {
+      return;
+    }
+
+    List<Map.Entry<Key, Entry>> entries = new ArrayList<>(cache.entrySet());
+    entries.sort(Map.Entry.comparingByValue(Entry.BY_LAST_ACCESS));
+    for (int i = 0; i < entries.size() - limit; i++) {
+      Map.Entry<Key, Entry> eldest = entries.get(i);
+      cache.remove(eldest.getKey());
+      evicted.add(eldest.getValue().variable);
+      evictionCount.incrementAndGet();
+      logger.debug("Evicted least recently requested variable '{}'.", eldest.getKey().nodeId);
+    }
+  }
+
+  private static void evictIdle() {
+    List<OpcUaVariable> evicted = new ArrayList<>();
+    synchronized (lock) {
+      long limit = maxIdleNanos;
+      long now = System.nanoTime();
+      Iterator<Map.Entry<Key, Entry>> entries = cache.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<Key, Entry> entry = entries.next();
+        long idleNanos = now - entry.getValue().lastUsed();
+        if (idleNanos >= limit) {
+          entries.remove();
+          evicted.add(entry.getValue().variable);
+          evictionCount.incrementAndGet();
+          logger.debug("Evicted variable '{}' after {} ns without use.", entry.getKey().nodeId, idleNanos);
+        }
+      }
+    }
+    release(evicted);
+  }
+
+  /**
+   * Deletes the monitored items of variables which are no longer cached.
+   */
+  private static void release(List<OpcUaVariable> variables) {
+    for (OpcUaVariable variable : variables) {
+      if (variable instanceof SubscribedOpcUaVariable) {
+        ((SubscribedOpcUaVariable) variable).unsubscribe();
+      }
+    }
   }
 
   /**
@@ -70,4 +431,152 @@ public class OpcUaVariableFactory {
   public static OpcUaVariable create(OpcUaClient client, NodeId nodeId, Class<?> dataType, Duration cacheDuration) {
     return new OpcUaVariable(client, nodeId, dataType, cacheDuration);
   }
+
+  /**
+   * Creates a new {@link OpcUaVariable}. It will never be taken from cache nor
+   * will the created instance be cached for future use.
+   *
+   * @param client      The client used to retrieve this variable.
+   * @param nodeId      The nodeId of the variable.
+   * @param dataType    The variable's type. See {@link IOpcUaClient} for
+   *                    details.
+   * @param cachePolicy Decides when the variable's cached value is returned and
+   *                    when it is refetched.
+   *
+   * @return A new {@code OpcUaVariable}.
+   */
+  public static OpcUaVariable create(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      CachePolicy cachePolicy) {
+    return new OpcUaVariable(client, nodeId, dataType, cachePolicy);
+  }
+
+  /**
+   * Creates a new {@link SubscribedOpcUaVariable}. It will never be taken from
+   * cache nor will the created instance be cached for future use.
+   *
+   * @param client       The client used to retrieve this variable.
+   * @param nodeId       The nodeId of the variable.
+   * @param dataType     The variable's type. See {@link IOpcUaClient} for
+   *                     details.
+   * @param subscription The settings of the monitored item which pushes the
+   *                     variable's value.
+   *
+   * @return A new {@code SubscribedOpcUaVariable}.
+   */
+  public static SubscribedOpcUaVariable create(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      SubscriptionSettings subscription) {
+    return new SubscribedOpcUaVariable(client, nodeId, dataType, subscription);
+  }
+
+  /**
+   * A snapshot of the statistics of the variable cache.
+   */
+  public static final class Statistics {
+    private final int size;
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    private Statistics(int size, long hitCount, long missCount, long evictionCount) {
+      this.size = size;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Gets the number of currently cached variables.
+     *
+     * @return The cache size.
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * Gets the number of requests which returned a cached variable.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Gets the number of requests which created a new variable.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Gets the number of variables evicted because of the size limit or idle
+     * time. Variables dropped because their client was closed are not counted.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+      return "Statistics [size=" + size + ", hitCount=" + hitCount + ", missCount=" + missCount
+          + ", evictionCount=" + evictionCount + "]";
+    }
+  }
+
+  private static final class Entry {
+    // Orders by nanoTime, which may overflow, so compares differences.
+    private static final Comparator<Entry> BY_LAST_ACCESS = (a, b) -> Long.signum(a.lastAccess - b.lastAccess);
+
+    private final OpcUaVariable variable;
+    private volatile long lastAccess = System.nanoTime();
+
+    private Entry(OpcUaVariable variable) {
+      this.variable = variable;
+    }
+
+    /**
+     * Gets the time of the last request from the factory or read from the
+     * server, whichever is later.
+     */
+    private long lastUsed() {
+      long lastUsed = lastAccess;
+      OpcUaVariable.CacheEntry cached = variable.cacheEntry();
+      if (!cached.isEmpty() && cached.timestamp - lastUsed > 0) {
+        lastUsed = cached.timestamp;
+      }
+      return lastUsed;
+    }
+  }
+
+  private static final class Key {
+    private final OpcUaClient client;
+    private final NodeId nodeId;
+
+    private Key(OpcUaClient client, NodeId nodeId) {
+      this.client = client;
+      this.nodeId = nodeId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return client.equals(other.client) && nodeId.equals(other.nodeId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(client, nodeId);
+    }
+  }
 }
@@ -0,0 +1,315 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically reads {@link OpcUaVariable}s and publishes the values into
+ * their caches.
+ *
+ * <p>
+ * Variables are grouped by their {@link OpcUaClient} and poll interval. Every
+ * group is read with one batched read per tick (see
+ * {@link OpcUaClient#readValuesAsync(List)}), so the load on the server only
+ * depends on the number of groups and not on how often the variables are read.
+ * A tick is skipped if the previous read of the same group hasn't completed
+ * yet.
+ *
+ * <p>
+ * Polling only keeps the cache filled. The variables still decide whether the
+ * cached value is returned; their {@link CachePolicy} should therefore keep
+ * values for at least one poll interval.
+ *
+ * <p>
+ * Variables of a client stop being polled when the client is
+ * {@link OpcUaClient#close() closed}.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>{@code
+ * PollScheduler scheduler = new PollScheduler();
+ * // Poll every variable created for the client through OpcUaVariableFactory.
+ * scheduler.registerAll(client, Duration.ofMillis(500));
+ * }</pre>
+ */
+public final class PollScheduler implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(PollScheduler.class);
+
+  private final ScheduledExecutorService executor;
+  private final Map<GroupKey, PollGroup> groups = new HashMap<>();
+  private final Map<OpcUaVariable, GroupKey> memberships = new HashMap<>();
+  private final Map<OpcUaClient, Runnable> closeListeners = new IdentityHashMap<>();
+  private boolean closed;
+
+  /**
+   * Creates a scheduler which runs on the package's shared background
+   * executor.
+   */
+  public PollScheduler() {
+    this(SharedExecutors.scheduler());
+  }
+
+  /**
+   * Creates a scheduler which runs on the given executor.
+   *
+   * @param executor The executor on which the ticks are scheduled. Ticks only
+   *                 start the asynchronous reads and return immediately.
+   */
+  public PollScheduler(ScheduledExecutorService executor) {
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * Starts polling the given variable. If the variable is already polled, its
+   * interval is changed.
+   *
+   * @param variable The variable to poll.
+   * @param interval The time between two reads. Must be positive.
+   */
+  public synchronized void register(OpcUaVariable variable, Duration interval) {
+    Objects.requireNonNull(variable);
+    if (interval.isNegative() || interval.isZero()) {
+      throw new IllegalArgumentException("interval must be positive.");
+    }
+    if (closed) {
+      throw new IllegalStateException("The scheduler has been closed.");
+    }
+
+    GroupKey key = new GroupKey(variable.getClient(), interval);
+    GroupKey previous = memberships.put(variable, key);
+    if (key.equals(previous)) {
+      return;
+    }
+    if (previous != null) {
+      removeFromGroup(previous, variable);
+    }
+
+    groups.computeIfAbsent(key, this::startGroup).variables.add(variable);
+    if (!closeListeners.containsKey(key.client)) {
+      Runnable listener = () -> unregisterAll(key.client);
+      closeListeners.put(key.client, listener);
+      key.client.addCloseListener(listener);
+    }
+  }
+
+  /**
+   * Starts polling all variables which {@link OpcUaVariableFactory} has cached
+   * for the given client. Variables which are pushed by the server
+   * ({@link SubscribedOpcUaVariable}) are skipped.
+   *
+   * <p>
+   * Variables created later are not picked up automatically.
+   *
+   * @param client   The client whose variables to poll.
+   * @param interval The time between two reads. Must be positive.
+   *
+   * @return The number of variables registered.
+   */
+  public synchronized int registerAll(OpcUaClient client, Duration interval) {
+    int count = 0;
+    for (OpcUaVariable variable : OpcUaVariableFactory.getCached(client)) {
+      if (!(variable instanceof SubscribedOpcUaVariable)) {
+        register(variable, interval);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Stops polling the given variable. Does nothing if it isn't polled.
+   *
+   * @param variable The variable to stop polling.
+   */
+  public synchronized void unregister(OpcUaVariable variable) {
+    GroupKey key = memberships.remove(variable);
+    if (key != null) {
+      removeFromGroup(key, variable);
+    }
+  }
+
+  /**
+   * Stops polling all variables of the given client.
+   *
+   * @param client The client whose variables to stop polling.
+   */
+  public synchronized void unregisterAll(OpcUaClient client) {
+    for (OpcUaVariable variable : new ArrayList<>(memberships.keySet())) {
+      if (variable.getClient() == client) {
+        unregister(variable);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of batched reads issued per poll cycle, i.e. the number of
+   * distinct client and interval combinations.
+   *
+   * @return The number of poll groups.
+   */
+  public synchronized int getGroupCount() {
+    return groups.size();
+  }
+
+  /**
+   * Stops polling all variables. The scheduler can't be used afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    for (PollGroup group : groups.values()) {
+      group.task.cancel(false);
+    }
+    groups.clear();
+    memberships.clear();
+    for (Map.Entry<OpcUaClient, Runnable> listener : closeListeners.entrySet()) {
+      listener.getKey().removeCloseListener(listener.getValue());
+    }
+    closeListeners.clear();
+  }
+
+  private PollGroup startGroup(GroupKey key) {
+    logger.debug("Starting to poll {} every {}.", key.client.endpoint, key.interval);
+    PollGroup group = new PollGroup(key.client);
+    long intervalNanos = key.interval.toNanos();
+    group.task = executor.scheduleAtFixedRate(group::poll, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    return group;
+  }
+
+  private void removeFromGroup(GroupKey key, OpcUaVariable variable) {
+    PollGroup group = groups.get(key);
+    group.variables.remove(variable);
+    if (group.variables.isEmpty()) {
+      logger.debug("Stopping to poll {} every {}.", key.client.endpoint, key.interval);
+      group.task.cancel(false);
+      groups.remove(key);
+      releaseClient(key.client);
+    }
+  }
+
+  /**
+   * Stops listening for the client being closed once none of its variables
+   * are polled anymore.
+   */
+  private void releaseClient(OpcUaClient client) {
+    for (GroupKey key : groups.keySet()) {
+      if (key.client == client) {
+        return;
+      }
+    }
+    Runnable listener = closeListeners.remove(client);
+    if (listener != null) {
+      client.removeCloseListener(listener);
+    }
+  }
+
+  private static final class PollGroup {
+    private final OpcUaClient client;
+    private final List<OpcUaVariable> variables = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private ScheduledFuture<?> task;
+
+    private PollGroup(OpcUaClient client) {
+      this.client = client;
+    }
+
+    private void poll() {
+      if (!polling.compareAndSet(false, true)) {
+        logger.debug("Skipping poll of {}, previous poll still running.", client.endpoint);
+        return;
+      }
+
+      List<OpcUaVariable> snapshot = new ArrayList<>(variables);
+      List<NodeId> nodeIds = new ArrayList<>(snapshot.size());
+      long[] writeSequences = new long[snapshot.size()];
+      for (int i = 0; i < snapshot.size(); i++) {
+        nodeIds.add(snapshot.get(i).getNodeId());
+        writeSequences[i] = snapshot.get(i).cacheEntry().writeSequence;
+      }
+
+      try {
+        client.readValuesAsync(nodeIds).whenComplete((results, error) -> {
+          polling.set(false);
+          if (error != null) {
+            logger.warn("Polling {} variables from {} failed.", nodeIds.size(), client.endpoint, error);
+            return;
+          }
+          for (int i = 0; i < results.size(); i++) {
+            publish(snapshot.get(i), results.get(i), writeSequences[i]);
+          }
+        });
+      } catch (RuntimeException e) {
+        polling.set(false);
+        logger.warn("Polling {} variables from {} failed.", nodeIds.size(), client.endpoint, e);
+      }
+    }
+
+    private static void publish(OpcUaVariable variable, ReadResult result, long writeSequence) {
+      if (!result.isGood()) {
+        logger.debug("Polling '{}' returned {}.", variable.getNodeId(), result);
+        return;
+      }
+      try {
+        variable.acceptValue(result.getValue(), writeSequence);
+      } catch (ProviderException e) {
+        logger.warn("Discarding polled value of '{}'.", variable.getNodeId(), e);
+      }
+    }
+  }
+
+  private static final class GroupKey {
+    private final OpcUaClient client;
+    private final Duration interval;
+
+    private GroupKey(OpcUaClient client, Duration interval) {
+      this.client = client;
+      this.interval = interval;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof GroupKey)) {
+        return false;
+      }
+      GroupKey other = (GroupKey) obj;
+      return client == other.client && interval.equals(other.interval);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(client) + interval.hashCode();
+    }
+  }
+}
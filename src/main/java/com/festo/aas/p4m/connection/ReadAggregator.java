@@ -0,0 +1,108 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+
+/**
+ * Collects single-node reads of an {@link OpcUaClient} for a short window and
+ * sends them to the server as one batched read.
+ *
+ * <p>
+ * The first read of a window schedules the batch. All reads arriving until the
+ * window ends join it; reads of the same node share one result. A batch is
+ * sent early once it reaches the client's maximum number of nodes per request,
+ * which cancels its scheduled flush.
+ */
+final class ReadAggregator {
+  private final OpcUaClient client;
+  private Map<NodeId, CompletableFuture<ReadResult>> pending = new LinkedHashMap<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  ReadAggregator(OpcUaClient client) {
+    this.client = client;
+  }
+
+  /**
+   * Adds a read to the current batch.
+   *
+   * @param nodeId      The node to read.
+   * @param windowNanos How long to wait for further reads if this read starts a
+   *                    new batch.
+   * @param maxNodes    The batch size which triggers sending the batch
+   *                    immediately.
+   *
+   * @return A future which completes with the node's result once the batch was
+   *         read.
+   */
+  CompletableFuture<ReadResult> read(NodeId nodeId, long windowNanos, int maxNodes) {
+    CompletableFuture<ReadResult> future;
+    boolean batchFull;
+    synchronized (this) {
+      future = pending.get(nodeId);
+      if (future != null) {
+        return future;
+      }
+
+      future = new CompletableFuture<>();
+      pending.put(nodeId, future);
+      batchFull = pending.size() >= maxNodes;
+      if (!batchFull && pending.size() == 1) {
+        scheduledFlush = SharedExecutors.scheduler().schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    if (batchFull) {
+      flush();
+    }
+    return future;
+  }
+
+  private void flush() {
+    Map<NodeId, CompletableFuture<ReadResult>> batch;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new LinkedHashMap<>();
+      if (scheduledFlush != null) {
+        // Does nothing if this is the scheduled flush.
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+    }
+
+    List<NodeId> nodeIds = new ArrayList<>(batch.keySet());
+    List<CompletableFuture<ReadResult>> futures = new ArrayList<>(batch.values());
+    client.readValuesAsync(nodeIds, Runnable::run).whenComplete((results, error) -> {
+      for (int i = 0; i < futures.size(); i++) {
+        if (error != null) {
+          futures.get(i).completeExceptionally(error);
+        } else {
+          futures.get(i).complete(results.get(i));
+        }
+      }
+    });
+  }
+}
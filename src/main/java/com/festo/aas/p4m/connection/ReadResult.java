@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+/**
+ * The outcome of reading a single node as part of a batched read.
+ *
+ * <p>
+ * Returned by {@link OpcUaClient#readValues(java.util.List)}. Each node in a
+ * batch is read independently, so some nodes may fail while others succeed.
+ * Check {@link #isGood()} before accessing the value, or let
+ * {@link #getValue()} throw.
+ */
+public final class ReadResult {
+  private final NodeId nodeId;
+  private final Object value;
+  private final StatusCode statusCode;
+  private final Throwable cause;
+
+  ReadResult(NodeId nodeId, Object value, StatusCode statusCode) {
+    this(nodeId, value, statusCode, null);
+  }
+
+  ReadResult(NodeId nodeId, Object value, StatusCode statusCode, Throwable cause) {
+    this.nodeId = nodeId;
+    this.value = value;
+    this.statusCode = statusCode;
+    this.cause = cause;
+  }
+
+  /**
+   * Gets the id of the node that was read.
+   *
+   * @return The node id.
+   */
+  public NodeId getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Whether the node was read successfully.
+   *
+   * @return {@code true} if the OPC UA status code is good.
+   */
+  public boolean isGood() {
+    return statusCode.isGood();
+  }
+
+  /**
+   * Gets the raw OPC UA status code returned by the server for this node.
+   *
+   * @return The status code as an unsigned 32 bit value.
+   */
+  public long getStatusCode() {
+    return statusCode.getValue();
+  }
+
+  /**
+   * Gets the value which was read.
+   *
+   * @return The value. You have to know what data type to expect. See
+   *         {@link org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient
+   *         here} for details on types.
+   *
+   * @throws OpcUaException if the node could not be read. If the read failed
+   *                        with an exception rather than a status code, that
+   *                        exception is the cause.
+   */
+  public Object getValue() {
+    if (!statusCode.isGood()) {
+      throw new OpcUaException("Reading node '" + nodeId + "' failed with status " + statusCode, cause);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "ReadResult [nodeId=" + nodeId + ", status=" + statusCode + ", value=" + value + "]";
+  }
+}
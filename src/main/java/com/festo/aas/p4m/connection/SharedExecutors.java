@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the executors used for background work in this package, e.g. health
+ * checks or periodic refreshes.
+ *
+ * <p>
+ * All threads are daemon threads, so they never keep the JVM alive. The tasks
+ * scheduled on these executors must be short. Anything which waits for an OPC
+ * UA server must use the asynchronous APIs of {@link OpcUaClient}.
+ */
+final class SharedExecutors {
+  private static final int SCHEDULER_THREADS = 2;
+  private static final int BLOCKING_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+  private static final int BLOCKING_QUEUE_CAPACITY = 1024;
+  private static final long BLOCKING_KEEP_ALIVE_SECONDS = 60;
+
+  private SharedExecutors() {
+    throw new AssertionError("Cannot create instances.");
+  }
+
+  /**
+   * Gets the scheduler for periodic and delayed background tasks.
+   *
+   * @return The shared scheduler.
+   */
+  static ScheduledExecutorService scheduler() {
+    return SchedulerHolder.SCHEDULER;
+  }
+
+  /**
+   * Gets the executor for tasks which block on I/O, e.g. reading a
+   * {@link PropertyValueSupplier} whose implementation isn't asynchronous.
+   *
+   * <p>
+   * The pool is bounded. Threads are created on demand up to a limit and
+   * discarded after a minute of inactivity. Further tasks wait in a bounded
+   * queue. If that is full as well, the submitting thread runs the task itself,
+   * which slows down the producer instead of failing its request.
+   * {@link ConnectedProperty} interrupts such reads at its fetch timeout, just
+   * like reads running on the pool.
+   *
+   * @return The shared executor for blocking tasks.
+   */
+  static ExecutorService blockingExecutor() {
+    return BlockingExecutorHolder.EXECUTOR;
+  }
+
+  private static ThreadFactory daemonThreadFactory(String prefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static final class BlockingExecutorHolder {
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private static ExecutorService createExecutor() {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(BLOCKING_THREADS, BLOCKING_THREADS,
+          BLOCKING_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(BLOCKING_QUEUE_CAPACITY),
+          daemonThreadFactory("p4m-io-"), new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+
+  private static final class SchedulerHolder {
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+    private static ScheduledExecutorService createScheduler() {
+      ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS,
+          daemonThreadFactory("p4m-scheduler-"));
+      scheduler.setRemoveOnCancelPolicy(true);
+      return scheduler;
+    }
+  }
+}
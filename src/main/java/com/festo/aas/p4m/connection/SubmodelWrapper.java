@@ -14,9 +14,30 @@
 
 package com.festo.aas.p4m.connection;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
 import org.eclipse.basyx.submodel.metamodel.api.submodelelement.ISubmodelElement;
 import org.eclipse.basyx.submodel.metamodel.map.Submodel;
-import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaProvider;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.SubmodelElement;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.SubmodelElementCollection;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.exception.provider.ResourceNotFoundException;
+import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Wraps a {@link Submodel} object with convenience methods for reading or
@@ -39,6 +60,17 @@ import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaProvider;
  * {@link #setValue(Object, String...)} methods.
  *
  * <p>
+ * Elements which are accessed repeatedly should be accessed through an
+ * {@link ElementHandle} instead, which is created once using
+ * {@link #handle(String...)}.
+ *
+ * <p>
+ * Many values can be read at once using {@link #getValues(Collection, boolean)}
+ * or {@link #snapshot(boolean)}. These read all OPC UA variables involved in as
+ * few requests as possible. Likewise, {@link #setValues(Map, boolean)} writes many
+ * values at once and can optionally roll back all of them if any write fails.
+ *
+ * <p>
  * If the user would like access to the submodel element itself, not it's value,
  * they can use {@link #getSubmodelElement(String...)}.
  *
@@ -83,7 +115,9 @@ import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaProvider;
  * <code>{"OuterCollection", "PropertyInOuter", "DeeplyNestedProperty"}</code>
  */
 public final class SubmodelWrapper {
-  private final VABLambdaProvider lambdaProvider;
+  private static final Logger logger = LoggerFactory.getLogger(SubmodelWrapper.class);
+
+  private final VABLambdaHandler lambdaHandler = new VABLambdaHandler();
   private final Submodel submodel;
 
   /**
@@ -93,7 +127,6 @@ public final class SubmodelWrapper {
    */
   public SubmodelWrapper(Submodel submodel) {
     this.submodel = submodel;
-    this.lambdaProvider = new VABLambdaProvider(submodel);
   }
 
   /**
@@ -120,7 +153,56 @@ public final class SubmodelWrapper {
    * @return          The {@link ISubmodelElement} object.
    */
   public ISubmodelElement getSubmodelElement(String... idShorts) {
-    return submodel.getSubmodelElement(generatePath(idShorts));
+    Map<String, Object> element = resolve(idShorts);
+    if (element instanceof ISubmodelElement) {
+      return (ISubmodelElement) element;
+    }
+    return SubmodelElement.createAsFacade(element);
+  }
+
+  /**
+   * Gets a slice of the elements contained in a submodel element collection.
+   *
+   * <p>
+   * If the collection is backed by a {@link CollectionDelegate} with a
+   * {@link CollectionDelegate#setPageHandler(CollectionPageHandler) page
+   * handler}, only the requested slice is fetched. Otherwise it's cut from the
+   * whole collection.
+   *
+   * @param  offset                    The number of elements to skip.
+   * @param  limit                     The maximum number of elements to return.
+   * @param  idShorts                  The path of idShorts to the collection.
+   *
+   * @return                           The elements of the slice.
+   *
+   * @throws ResourceNotFoundException If the collection doesn't exist.
+   * @throws IllegalArgumentException  If the element isn't a collection.
+   */
+  public Collection<ISubmodelElement> getSubmodelElements(int offset, int limit, String... idShorts) {
+    Map<String, Object> collection = resolve(idShorts);
+    if (!SubmodelElementCollection.isSubmodelElementCollection(collection)) {
+      throw new IllegalArgumentException("'" + String.join("/", idShorts) + "' is not a submodel element collection.");
+    }
+    return CollectionDelegate.getPage(collection.get(Property.VALUE), offset, limit);
+  }
+
+  /**
+   * Creates a reusable handle for reading and writing the value of a submodel
+   * element.
+   *
+   * <p>
+   * The element is looked up once, right now. Reading or writing through the
+   * handle then skips all path handling, so handles should be preferred for
+   * elements which are accessed repeatedly.
+   *
+   * @param  idShorts                  The path of idShorts to the element.
+   *
+   * @return                           The handle.
+   *
+   * @throws ResourceNotFoundException If the element doesn't exist.
+   */
+  public ElementHandle handle(String... idShorts) {
+    return new ElementHandle(lambdaHandler, resolve(idShorts), idShorts.clone());
   }
 
   /**
@@ -137,8 +219,7 @@ public final class SubmodelWrapper {
    *                  correct type.
    */
   public Object getValue(String... idShorts) {
-    String path = generatePath("submodelElements/", "/value", idShorts);
-    return lambdaProvider.getValue(path);
+    return handle(idShorts).get();
   }
 
   /**
@@ -153,20 +234,493 @@ public final class SubmodelWrapper {
    * @param idShorts The path of idShorts to the element.
    */
   public void setValue(Object value, String... idShorts) {
-    String path = generatePath("submodelElements/", "/value", idShorts);
-    lambdaProvider.setValue(path, value);
+    handle(idShorts).set(value);
+  }
+
+  /**
+   * Gets the values of many submodel elements at once, serving OPC UA variables
+   * from their caches where possible.
+   *
+   * <p>
+   * Same as {@link #getValues(Collection, boolean)} without consistent mode.
+   *
+   * @param  paths                     The paths of idShorts to the elements.
+   *
+   * @return                           The values, keyed by the idShorts of each
+   *                                   path joined by {@code "/"}. Iterates in
+   *                                   the order of {@code paths}.
+   *
+   * @throws ResourceNotFoundException If any of the elements doesn't exist.
+   */
+  public Map<String, Object> getValues(Collection<String[]> paths) {
+    return getValues(paths, false);
+  }
+
+  /**
+   * Gets the values of many submodel elements at once.
+   *
+   * <p>
+   * All {@link OpcUaVariable}s backing {@link ConnectedProperty} elements are
+   * read up front: one batched read per {@link OpcUaClient}, with the reads for
+   * different clients running in parallel. This is much faster than reading
+   * each element on its own.
+   *
+   * <p>
+   * Normally, variables whose cached value is still valid are served from their
+   * cache, so the values may have been read at different times. In consistent
+   * mode, all variables are read from their servers, bypassing the caches. All
+   * values from the same server then stem from the same batched read, unless a
+   * write completes while it runs. Suppliers which aren't OPC UA variables are
+   * read one by one in either mode.
+   *
+   * @param  paths                     The paths of idShorts to the elements.
+   * @param  consistent                Whether to bypass the caches of the OPC
+   *                                   UA variables.
+   *
+   * @return                           The values, keyed by the idShorts of each
+   *                                   path joined by {@code "/"}. Iterates in
+   *                                   the order of {@code paths}.
+   *
+   * @throws ResourceNotFoundException If any of the elements doesn't exist.
+   */
+  public Map<String, Object> getValues(Collection<String[]> paths, boolean consistent) {
+    Map<String, Map<String, Object>> elements = new LinkedHashMap<>();
+    for (String[] idShorts : paths) {
+      elements.put(String.join("/", idShorts), resolve(idShorts));
+    }
+    return readValues(elements, consistent);
+  }
+
+  /**
+   * Gets the values of all submodel elements in the submodel, serving OPC UA
+   * variables from their caches where possible.
+   *
+   * <p>
+   * Same as {@link #snapshot(boolean)} without consistent mode.
+   *
+   * @return The values, keyed by the idShorts of each element's path joined by
+   *         {@code "/"}.
+   */
+  public Map<String, Object> snapshot() {
+    return snapshot(false);
+  }
+
+  /**
+   * Gets the values of all submodel elements in the submodel.
+   *
+   * <p>
+   * Collections are descended into; only the elements they contain are part of
+   * the result. Elements without a value, like operations, are left out. Values
+   * are read as described for {@link #getValues(Collection, boolean)}.
+   *
+   * @param  consistent Whether to bypass the caches of the OPC UA variables.
+   *
+   * @return            The values, keyed by the idShorts of each element's path
+   *                    joined by {@code "/"}.
+   */
+  public Map<String, Object> snapshot(boolean consistent) {
+    Map<String, Map<String, Object>> elements = new LinkedHashMap<>();
+    collectElements(lambdaHandler.getElementProperty(submodel, Submodel.SUBMODELELEMENT), "", elements);
+    return readValues(elements, consistent);
+  }
+
+  /**
+   * Runs an action which reads many elements of the submodel, with all OPC UA
+   * variables read up front.
+   *
+   * <p>
+   * When BaSyx serves the whole submodel, it calls the getter of each
+   * {@link ConnectedProperty} one after another, and each of them reads its own
+   * OPC UA variables. This method first reads the OPC UA variables backing all
+   * connected properties in the submodel, as described for
+   * {@link #getValues(Collection, boolean)} without consistent mode. While the
+   * action runs, connected properties read on the current thread use these
+   * values instead of reading again.
+   *
+   * <h2>Example</h2>
+   *
+   * <pre>{@code
+   * Object submodel = wrapper.withPrefetchedValues(() -> provider.getValue("/submodel"));
+   * }</pre>
+   *
+   * @param  <T>    The type of the action's result.
+   * @param  action The action to run, e.g. serializing the submodel.
+   *
+   * @return        The action's result.
+   */
+  public <T> T withPrefetchedValues(Supplier<T> action) {
+    Map<String, Map<String, Object>> elements = new LinkedHashMap<>();
+    collectElements(lambdaHandler.getElementProperty(submodel, Submodel.SUBMODELELEMENT), "", elements);
+    return ConnectedProperty.withPrefetchedValues(prefetch(collectVariables(elements.values()), false), action);
   }
 
-  private String generatePath(String... idShorts) {
-    return generatePath(null, null, idShorts);
+  /**
+   * Sets the values of many submodel elements at once.
+   *
+   * <p>
+   * Same as {@link #setValues(Map, boolean)} without all-or-nothing mode.
+   *
+   * @param  values                   The new values, keyed by the idShorts of
+   *                                  each element's path joined by {@code "/"}.
+   *
+   * @return                          The outcome for each path.
+   *
+   * @throws IllegalArgumentException If any path or value is invalid. Nothing is
+   *                                  written in that case.
+   */
+  public Map<String, ElementWriteResult> setValues(Map<String, ?> values) {
+    return setValues(values, false);
   }
 
-  private String generatePath(String prefix, String suffix, String... idShorts) {
-    StringBuilder sb = new StringBuilder(prefix);
-    sb.append(String.join("/", idShorts));
-    if (suffix != null) {
-      sb.append(suffix);
+  /**
+   * Sets the values of many submodel elements at once.
+   *
+   * <p>
+   * All paths and values are validated before anything is written. For
+   * {@link ConnectedProperty} elements, this includes running their consume
+   * filters and checking the resulting values against the data types of their
+   * {@link OpcUaVariable}s. The OPC UA variables of all elements are then
+   * written in one batched request per {@link OpcUaClient}. Other elements are
+   * written one by one afterwards.
+   *
+   * <p>
+   * Normally, each element is written independently and a failure only affects
+   * that element. In all-or-nothing mode, the previous values are read from the
+   * servers before writing and, if any write fails, all elements written so far are restored to
+   * these values. Elements whose values can't be read back, i.e. connected
+   * properties with consumers other than OPC UA variables, can't be written in
+   * this mode.<br>
+   * Note that this is no transaction in the database sense: other clients may
+   * see the new values before they're rolled back, and a rollback may itself
+   * fail, which is logged and reported as a result which isn't rolled back.
+   *
+   * <p>
+   * Writes to the same connected properties through
+   * {@link ConnectedProperty#setValue(Object)} wait until this method returns.
+   *
+   * @param  values                   The new values, keyed by the idShorts of
+   *                                  each element's path joined by {@code "/"}.
+   * @param  allOrNothing             Whether to roll back all writes if any of
+   *                                  them fails.
+   *
+   * @return                          The outcome for each path, in the order of
+   *                                  {@code values}.
+   *
+   * @throws IllegalArgumentException If any path or value is invalid. Nothing is
+   *                                  written in that case.
+   */
+  public Map<String, ElementWriteResult> setValues(Map<String, ?> values, boolean allOrNothing) {
+    List<PlannedWrite> writes = new ArrayList<>(values.size());
+    Map<OpcUaVariable, Object> variableValues = new LinkedHashMap<>();
+    for (Map.Entry<String, ?> entry : values.entrySet()) {
+      PlannedWrite write;
+      try {
+        write = planWrite(entry.getKey(), entry.getValue(), allOrNothing);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("Can't write '" + entry.getKey() + "': " + e.getMessage(), e);
+      }
+
+      for (Map.Entry<OpcUaVariable, Object> variableValue : write.variableValues.entrySet()) {
+        OpcUaVariable variable = variableValue.getKey();
+        if (variableValues.containsKey(variable)
+            && !Objects.deepEquals(variableValues.get(variable), variableValue.getValue())) {
+          throw new IllegalArgumentException("Can't write '" + entry.getKey() + "': Another element writes a "
+              + "different value to " + variable.getNodeId() + ".");
+        }
+        variableValues.put(variable, variableValue.getValue());
+      }
+      writes.add(write);
+    }
+
+    List<ConnectedProperty> properties = new ArrayList<>();
+    for (PlannedWrite write : writes) {
+      if (write.property != null) {
+        properties.add(write.property);
+      }
+    }
+
+    Runnable unlock = ConnectedProperty.lockForWrite(properties);
+    try {
+      return applyWrites(writes, variableValues, allOrNothing);
+    } finally {
+      unlock.run();
+    }
+  }
+
+  private Map<String, ElementWriteResult> applyWrites(List<PlannedWrite> writes,
+      Map<OpcUaVariable, Object> variableValues, boolean allOrNothing) {
+    Map<OpcUaVariable, Object> previousValues = Collections.emptyMap();
+    if (allOrNothing) {
+      // The previous values are read from the server, as cached values may be outdated.
+      previousValues = prefetch(variableValues.keySet(), true);
+      for (PlannedWrite write : writes) {
+        if (write.handle != null) {
+          write.previousValue = write.handle.get();
+        }
+      }
+    }
+
+    List<OpcUaVariable> readbacks = new ArrayList<>();
+    Map<OpcUaVariable, RuntimeException> failures = OpcUaVariable.writeValues(variableValues, readbacks);
+    PlannedWrite firstFailure = null;
+    for (PlannedWrite write : writes) {
+      for (OpcUaVariable variable : write.variableValues.keySet()) {
+        if (write.error == null && failures.containsKey(variable)) {
+          write.error = failures.get(variable);
+          firstFailure = firstFailure == null ? write : firstFailure;
+        }
+      }
+    }
+
+    for (PlannedWrite write : writes) {
+      if (allOrNothing && firstFailure != null) {
+        break;
+      }
+      if (write.error == null) {
+        try {
+          write.applyDirectly();
+        } catch (RuntimeException e) {
+          write.error = e;
+          firstFailure = firstFailure == null ? write : firstFailure;
+        }
+      }
+    }
+
+    if (allOrNothing && firstFailure != null) {
+      rollBack(writes, firstFailure, previousValues, failures);
+      readbacks.removeAll(previousValues.keySet());
+    }
+
+    try {
+      OpcUaVariable.readBack(readbacks);
+    } catch (RuntimeException e) {
+      logger.warn("Reading back written values failed.", e);
+    }
+
+    Map<String, ElementWriteResult> results = new LinkedHashMap<>();
+    for (PlannedWrite write : writes) {
+      if (write.error == null && write.property != null) {
+        write.property.valueApplied(write.value);
+      }
+      results.put(write.path, new ElementWriteResult(write.path, write.error, write.rolledBack));
+    }
+    return results;
+  }
+
+  private PlannedWrite planWrite(String path, Object value, boolean allOrNothing) {
+    Map<String, Object> element = resolve(path.split("/"));
+    if (!(element instanceof ConnectedProperty)) {
+      return new PlannedWrite(path, value, null, new ElementHandle(lambdaHandler, element, path.split("/")));
+    }
+
+    ConnectedProperty property = (ConnectedProperty) element;
+    PlannedWrite write = new PlannedWrite(path, value, property, null);
+    for (Map.Entry<PropertyValueConsumer, Object> entry : property.mapToConsumers(value).entrySet()) {
+      if (entry.getKey() instanceof OpcUaVariable) {
+        OpcUaVariable variable = (OpcUaVariable) entry.getKey();
+        variable.checkValue(entry.getValue());
+        write.variableValues.put(variable, entry.getValue());
+      } else if (allOrNothing) {
+        throw new IllegalArgumentException("Consumers which aren't OPC UA variables can't be rolled back.");
+      } else {
+        write.otherValues.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return write;
+  }
+
+  /**
+   * Restores the previous values of all elements which were written.
+   */
+  private static void rollBack(List<PlannedWrite> writes, PlannedWrite failure,
+      Map<OpcUaVariable, Object> previousValues, Map<OpcUaVariable, RuntimeException> writeFailures) {
+    Map<OpcUaVariable, Object> restoredValues = new HashMap<>(previousValues);
+    restoredValues.keySet().removeAll(writeFailures.keySet());
+    Map<OpcUaVariable, RuntimeException> restoreFailures = OpcUaVariable.writeValues(restoredValues,
+        new ArrayList<>());
+
+    for (PlannedWrite write : writes) {
+      boolean restored = write.variableValues.keySet().stream().noneMatch(restoreFailures::containsKey);
+      if (write.applied) {
+        try {
+          write.handle.set(write.previousValue);
+        } catch (RuntimeException e) {
+          restored = false;
+        }
+      }
+
+      if (!restored) {
+        logger.error("Rolling back '{}' failed, it may hold its new value.", write.path);
+      }
+      if (write.error == null) {
+        write.rolledBack = restored && (write.applied || !write.variableValues.isEmpty());
+        write.error = new ProviderException((write.rolledBack ? "Rolled back" : "Not written") + ", because writing '"
+            + failure.path + "' failed.");
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void collectElements(Object children, String prefix, Map<String, Map<String, Object>> elements) {
+    for (Map.Entry<String, Object> child : ((Map<String, Object>) children).entrySet()) {
+      Map<String, Object> element = (Map<String, Object>) child.getValue();
+      String path = prefix + child.getKey();
+      if (SubmodelElementCollection.isSubmodelElementCollection(element)) {
+        collectElements(getCollectionContents(element), path + "/", elements);
+      } else if (element.containsKey(Property.VALUE)) {
+        elements.put(path, element);
+      }
+    }
+  }
+
+  /**
+   * Gets the elements contained in a collection, invoking its getter if the
+   * collection is backed by a {@link ValueDelegate}.
+   */
+  private static Object getCollectionContents(Map<String, Object> collection) {
+    Object value = collection.get(Property.VALUE);
+    if (value instanceof Map) {
+      Object getter = ((Map<?, ?>) value).get(VABLambdaHandler.VALUE_GET_SUFFIX);
+      if (getter instanceof Supplier) {
+        return ((Supplier<?>) getter).get();
+      }
+    }
+    return value;
+  }
+
+  private static Set<OpcUaVariable> collectVariables(Collection<Map<String, Object>> elements) {
+    Set<OpcUaVariable> variables = new LinkedHashSet<>();
+    for (Map<String, Object> element : elements) {
+      if (element instanceof ConnectedProperty) {
+        variables.addAll(((ConnectedProperty) element).getOpcUaVariables());
+      }
+    }
+    return variables;
+  }
+
+  private Map<String, Object> readValues(Map<String, Map<String, Object>> elements, boolean consistent) {
+    Map<OpcUaVariable, Object> prefetched = prefetch(collectVariables(elements.values()), consistent);
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (Map.Entry<String, Map<String, Object>> element : elements.entrySet()) {
+      if (element.getValue() instanceof ConnectedProperty) {
+        values.put(element.getKey(), ((ConnectedProperty) element.getValue()).getValue(prefetched));
+      } else {
+        values.put(element.getKey(),
+            lambdaHandler.postprocessObject(lambdaHandler.getElementProperty(element.getValue(), Property.VALUE)));
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reads OPC UA variables in one batch per client, running the batches in
+   * parallel.
+   *
+   * @param bypassCache Whether to read all variables from the server instead of
+   *                    serving some from their caches.
+   */
+  private static Map<OpcUaVariable, Object> prefetch(Set<OpcUaVariable> variables, boolean bypassCache) {
+    Map<OpcUaClient, List<OpcUaVariable>> variablesByClient = new HashMap<>();
+    for (OpcUaVariable variable : variables) {
+      variablesByClient.computeIfAbsent(variable.getClient(), k -> new ArrayList<>()).add(variable);
+    }
+
+    List<CompletableFuture<Map<OpcUaVariable, Object>>> reads = new ArrayList<>(variablesByClient.size());
+    for (List<OpcUaVariable> batch : variablesByClient.values()) {
+      if (variablesByClient.size() == 1) {
+        // Nothing to parallelize, so don't pay for the thread hop.
+        reads.add(CompletableFuture.completedFuture(readBatch(batch, bypassCache)));
+      } else {
+        reads.add(CompletableFuture.supplyAsync(() -> readBatch(batch, bypassCache),
+            SharedExecutors.blockingExecutor()));
+      }
+    }
+
+    Map<OpcUaVariable, Object> values = new HashMap<>(variables.size() * 2);
+    try {
+      for (CompletableFuture<Map<OpcUaVariable, Object>> read : reads) {
+        values.putAll(read.join());
+      }
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException ? (RuntimeException) cause : new ProviderException(cause);
+    }
+    return values;
+  }
+
+  private static Map<OpcUaVariable, Object> readBatch(List<OpcUaVariable> batch, boolean bypassCache) {
+    List<Object> batchValues = bypassCache ? OpcUaVariable.readFromServer(batch) : OpcUaVariable.getValues(batch);
+    Map<OpcUaVariable, Object> values = new HashMap<>(batch.size() * 2);
+    for (int i = 0; i < batch.size(); i++) {
+      values.put(batch.get(i), batchValues.get(i));
+    }
+    return values;
+  }
+
+  /**
+   * A single element's part of {@link #setValues(Map, boolean)}.
+   */
+  private static final class PlannedWrite {
+    private final String path;
+    private final Object value;
+    private final ConnectedProperty property;
+    private final ElementHandle handle;
+    private final Map<OpcUaVariable, Object> variableValues = new LinkedHashMap<>();
+    private final Map<PropertyValueConsumer, Object> otherValues = new LinkedHashMap<>();
+    private Object previousValue;
+    private RuntimeException error;
+    private boolean applied;
+    private boolean rolledBack;
+
+    PlannedWrite(String path, Object value, ConnectedProperty property, ElementHandle handle) {
+      this.path = path;
+      this.value = value;
+      this.property = property;
+      this.handle = handle;
+    }
+
+    /**
+     * Writes everything which isn't part of the batched OPC UA write.
+     */
+    void applyDirectly() {
+      if (handle != null) {
+        handle.set(value);
+        applied = true;
+        return;
+      }
+
+      for (Map.Entry<PropertyValueConsumer, Object> entry : otherValues.entrySet()) {
+        entry.getKey().applyValue(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Walks the path of idShorts from the submodel root down to an element.
+   *
+   * <p>
+   * Nested elements are looked up in their parent collection's value. That value
+   * may itself be provided by a {@link ValueDelegate}, in which case its getter
+   * is invoked.
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> resolve(String... idShorts) {
+    if (idShorts.length == 0) {
+      throw new IllegalArgumentException("At least one idShort is required.");
+    }
+
+    Object node = lambdaHandler.getElementProperty(submodel, Submodel.SUBMODELELEMENT);
+    for (int i = 0; i < idShorts.length; i++) {
+      if (i > 0) {
+        node = lambdaHandler.getElementProperty(node, Property.VALUE);
+      }
+      node = lambdaHandler.getElementProperty(node, idShorts[i]);
+    }
+
+    if (!(node instanceof Map)) {
+      throw new ResourceNotFoundException(
+          "\"" + String.join("/", idShorts) + "\" is not a submodel element.");
     }
-    return sb.toString();
+    return (Map<String, Object>) node;
   }
 }
@@ -0,0 +1,240 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link OpcUaVariable} whose value is pushed by the OPC UA server instead
+ * of being polled.
+ *
+ * <p>
+ * On first access, this variable registers an OPC UA <i>monitored item</i> for
+ * its node. From then on, the server reports every change of the value (subject
+ * to the configured sampling interval and deadband) and {@link #getValue()}
+ * simply returns the latest reported value without any network I/O.
+ *
+ * <p>
+ * As long as no value has been reported yet, while the monitored item reports
+ * a bad status (e.g. because the connection was lost), or while the client's
+ * session holding the subscriptions fails its
+ * {@link OpcUaClient#startHealthChecks(Duration) health checks}, reads fall
+ * back to regular OPC UA reads.
+ *
+ * <p>
+ * If the monitored item can't be created, e.g. because the server doesn't
+ * support subscriptions, reads keep falling back to regular OPC UA reads. They
+ * retry subscribing with an exponential backoff, starting at one second and
+ * growing up to one minute between attempts.
+ */
+public class SubscribedOpcUaVariable extends OpcUaVariable {
+  private static final long MIN_RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_RETRY_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final Logger logger = LoggerFactory.getLogger(this.getClass());
+  private final SubscriptionSettings settings;
+
+  // Identifies the current subscription attempt. Incremented by every attempt
+  // and by unsubscribe(), so that late callbacks of older attempts are ignored.
+  // Only modified while holding this object's lock.
+  private volatile long generation;
+  private volatile boolean subscribed;
+  private volatile long retryAt = System.nanoTime();
+  private int failedAttempts;
+
+  private volatile boolean live;
+  private volatile OpcUaClient.Monitor monitor;
+
+  /**
+   * Creates a new subscribed OPC UA variable connecting to the given node using
+   * the given client.
+   *
+   * <p>
+   * The monitored item isn't created until the value is first read or
+   * {@link #subscribe()} is called.
+   *
+   * @param client   The client object to use for communication.
+   * @param nodeId   The node whose value to read or write.
+   * @param dataType The class matching the type of the OPC UA variable. See table
+   *                 at {@link IOpcUaClient}.
+   * @param settings The sampling interval, queue size and deadband of the
+   *                 monitored item.
+   */
+  public SubscribedOpcUaVariable(OpcUaClient client, NodeId nodeId, Class<?> dataType,
+      SubscriptionSettings settings) {
+    super(client, nodeId, dataType, Duration.ZERO);
+    this.settings = settings;
+  }
+
+  /**
+   * Gets the settings of this variable's monitored item.
+   *
+   * @return The subscription settings.
+   */
+  public SubscriptionSettings getSubscriptionSettings() {
+    return settings;
+  }
+
+  @Override
+  public Object getValue() throws ProviderException {
+    if (!subscribed && System.nanoTime() - retryAt >= 0) {
+      subscribe(false);
+    }
+    return super.getValue();
+  }
+
+  /**
+   * Creates the monitored item for this variable, unless that has already
+   * happened.
+   *
+   * <p>
+   * This method returns immediately. The monitored item is created in the
+   * background. Call this method after construction if the first read
+   * shouldn't have to wait for the server. Unlike the attempts made by reads,
+   * calling this method doesn't wait for the backoff after a failed attempt.
+   */
+  public void subscribe() {
+    subscribe(true);
+  }
+
+  private synchronized void subscribe(boolean ignoreBackoff) {
+    if (subscribed || (!ignoreBackoff && System.nanoTime() - retryAt < 0)) {
+      return;
+    }
+
+    subscribed = true;
+    long attempt = ++generation;
+    getClient().monitorValue(getNodeId(), settings, result -> onValueReported(attempt, result))
+        .whenComplete((createdMonitor, error) -> onSubscribed(attempt, createdMonitor, error));
+  }
+
+  private synchronized void onSubscribed(long attempt, OpcUaClient.Monitor createdMonitor, Throwable error) {
+    if (attempt != generation) {
+      // unsubscribe() was called while the monitored item was being created.
+      if (createdMonitor != null) {
+        getClient().cancelMonitor(createdMonitor);
+      }
+      return;
+    }
+
+    if (error == null) {
+      monitor = createdMonitor;
+      failedAttempts = 0;
+      return;
+    }
+
+    failedAttempts++;
+    long delay = Math.min(MIN_RETRY_DELAY_NANOS << Math.min(failedAttempts - 1, 16), MAX_RETRY_DELAY_NANOS);
+    retryAt = System.nanoTime() + delay;
+    subscribed = false;
+    if (failedAttempts == 1) {
+      logger.warn("Subscribing to '{}' on {} failed. Falling back to polling.", getNodeId(), getClient().endpoint,
+          error);
+    } else {
+      logger.debug("Subscribing to '{}' on {} failed again, retrying in {} ms: {}", getNodeId(),
+          getClient().endpoint, TimeUnit.NANOSECONDS.toMillis(delay), error.toString());
+    }
+  }
+
+  /**
+   * Deletes this variable's monitored item. Subsequent reads go to the server
+   * until {@link #subscribe()} is called again, either explicitly or by reading
+   * the value.
+   */
+  public synchronized void unsubscribe() {
+    final OpcUaClient.Monitor currentMonitor = monitor;
+    generation++;
+    live = false;
+    monitor = null;
+    subscribed = false;
+    if (currentMonitor != null) {
+      getClient().cancelMonitor(currentMonitor);
+    }
+  }
+
+  /**
+   * Whether the value is currently being pushed by the server.
+   *
+   * @return {@code true} if reads are served without network I/O.
+   */
+  public boolean isLive() {
+    return live;
+  }
+
+  /**
+   * Gets the number of subscription attempts which failed in a row.
+   *
+   * @return The number of failed attempts since the last successful one.
+   */
+  synchronized int getFailedAttempts() {
+    return failedAttempts;
+  }
+
+  /**
+   * Gets the token of the current subscription attempt.
+   *
+   * @return The current generation.
+   */
+  long getGeneration() {
+    return generation;
+  }
+
+  @Override
+  boolean cacheValid(CacheEntry entry) {
+    // Without a healthy session, reports may have stopped without a bad status.
+    return live && !entry.isEmpty() && getClient().isSubscriptionSessionHealthy();
+  }
+
+  @Override
+  boolean refreshDue(CacheEntry entry) {
+    return false;
+  }
+
+  /**
+   * Handles a value reported by the monitored item created by the given
+   * attempt. Reports of attempts other than the current one are ignored.
+   */
+  void onValueReported(long attempt, ReadResult result) {
+    if (attempt != generation) {
+      return;
+    }
+
+    if (!result.isGood()) {
+      logger.debug("Monitored item for '{}' reported bad status {}.", getNodeId(), result.getStatusCode());
+      live = false;
+      return;
+    }
+
+    try {
+      acceptValue(result.getValue());
+      live = true;
+    } catch (ProviderException e) {
+      logger.warn("Discarding value reported for '{}'.", getNodeId(), e);
+      live = false;
+    }
+
+    if (attempt != generation) {
+      // unsubscribe() ran concurrently. It may have reset live before it was set above.
+      live = false;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings for an OPC UA <i>monitored item</i> which pushes value changes from
+ * the server to a {@link SubscribedOpcUaVariable}.
+ *
+ * <p>
+ * Instances are immutable. Start with {@link #of(Duration)} and refine the
+ * settings with the {@code with...} methods:
+ *
+ * <pre>{@code
+ * SubscriptionSettings settings = SubscriptionSettings.of(Duration.ofMillis(100))
+ *     .withQueueSize(10)
+ *     .withAbsoluteDeadband(0.5);
+ * }</pre>
+ *
+ * <p>
+ * Monitored items are grouped into one OPC UA subscription per publishing
+ * interval. By default, the publishing interval equals the sampling interval,
+ * so every distinct sampling interval costs its own subscription and publish
+ * cycle. Items with different sampling intervals can share a subscription by
+ * setting the same {@link #withPublishingInterval(Duration) publishing
+ * interval}.
+ */
+public final class SubscriptionSettings {
+  private final Duration samplingInterval;
+  private final int queueSize;
+  private final DeadbandKind deadbandKind;
+  private final double deadband;
+  private final Duration publishingInterval;
+
+  /**
+   * The kinds of deadband the server can apply before reporting a change.
+   */
+  public enum DeadbandKind {
+    /**
+     * Every change is reported.
+     */
+    NONE,
+    /**
+     * A change is reported if it exceeds the deadband value in absolute terms.
+     */
+    ABSOLUTE,
+    /**
+     * A change is reported if it exceeds the deadband value as a percentage of
+     * the variable's <i>EURange</i>. Only supported for analog items.
+     */
+    PERCENT
+  }
+
+  private SubscriptionSettings(Duration samplingInterval, int queueSize, DeadbandKind deadbandKind,
+      double deadband, Duration publishingInterval) {
+    this.samplingInterval = samplingInterval;
+    this.queueSize = queueSize;
+    this.deadbandKind = deadbandKind;
+    this.deadband = deadband;
+    this.publishingInterval = publishingInterval;
+  }
+
+  /**
+   * Creates settings with the given sampling interval, a queue size of 1 and no
+   * deadband.
+   *
+   * @param samplingInterval The interval at which the server samples the
+   *                         variable. The server may revise this value.
+   *
+   * @return The new settings.
+   */
+  public static SubscriptionSettings of(Duration samplingInterval) {
+    Objects.requireNonNull(samplingInterval);
+    if (samplingInterval.isNegative()) {
+      throw new IllegalArgumentException("samplingInterval must not be negative.");
+    }
+    return new SubscriptionSettings(samplingInterval, 1, DeadbandKind.NONE, 0, samplingInterval);
+  }
+
+  /**
+   * Creates a copy of these settings with a different queue size.
+   *
+   * @param queueSize The number of changes the server queues between two
+   *                  notifications. Must be positive.
+   *
+   * @return The new settings.
+   */
+  public SubscriptionSettings withQueueSize(int queueSize) {
+    if (queueSize <= 0) {
+      throw new IllegalArgumentException("queueSize must be positive.");
+    }
+    return new SubscriptionSettings(samplingInterval, queueSize, deadbandKind, deadband, publishingInterval);
+  }
+
+  /**
+   * Creates a copy of these settings with a different publishing interval.
+   *
+   * @param publishingInterval The interval at which the server sends the
+   *                           changes of all items in the subscription. The
+   *                           server may revise this value.
+   *
+   * @return The new settings.
+   */
+  public SubscriptionSettings withPublishingInterval(Duration publishingInterval) {
+    Objects.requireNonNull(publishingInterval);
+    if (publishingInterval.isNegative()) {
+      throw new IllegalArgumentException("publishingInterval must not be negative.");
+    }
+    return new SubscriptionSettings(samplingInterval, queueSize, deadbandKind, deadband, publishingInterval);
+  }
+
+  /**
+   * Creates a copy of these settings with an absolute deadband.
+   *
+   * @param deadband The minimum absolute change required for a notification.
+   *
+   * @return The new settings.
+   */
+  public SubscriptionSettings withAbsoluteDeadband(double deadband) {
+    return withDeadband(DeadbandKind.ABSOLUTE, deadband);
+  }
+
+  /**
+   * Creates a copy of these settings with a percent deadband.
+   *
+   * @param deadband The minimum change, in percent of the variable's
+   *                 <i>EURange</i>, required for a notification.
+   *
+   * @return The new settings.
+   */
+  public SubscriptionSettings withPercentDeadband(double deadband) {
+    return withDeadband(DeadbandKind.PERCENT, deadband);
+  }
+
+  /**
+   * Gets the interval at which the server samples the variable.
+   *
+   * @return The sampling interval.
+   */
+  public Duration getSamplingInterval() {
+    return samplingInterval;
+  }
+
+  /**
+   * Gets the interval at which the server sends the changes of all items in
+   * the subscription.
+   *
+   * @return The publishing interval, which equals the sampling interval unless
+   *         it was changed.
+   */
+  public Duration getPublishingInterval() {
+    return publishingInterval;
+  }
+
+  /**
+   * Gets the number of changes the server queues between two notifications.
+   *
+   * @return The queue size.
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * Gets the kind of deadband applied by the server.
+   *
+   * @return The deadband kind.
+   */
+  public DeadbandKind getDeadbandKind() {
+    return deadbandKind;
+  }
+
+  /**
+   * Gets the deadband value. Its meaning depends on {@link #getDeadbandKind()}.
+   *
+   * @return The deadband value.
+   */
+  public double getDeadband() {
+    return deadband;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SubscriptionSettings)) {
+      return false;
+    }
+    SubscriptionSettings other = (SubscriptionSettings) obj;
+    return samplingInterval.equals(other.samplingInterval) && queueSize == other.queueSize
+        && deadbandKind == other.deadbandKind && Double.compare(deadband, other.deadband) == 0
+        && publishingInterval.equals(other.publishingInterval);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(samplingInterval, queueSize, deadbandKind, deadband, publishingInterval);
+  }
+
+  @Override
+  public String toString() {
+    return "SubscriptionSettings [samplingInterval=" + samplingInterval + ", queueSize=" + queueSize
+        + ", deadbandKind=" + deadbandKind + ", deadband=" + deadband + ", publishingInterval="
+        + publishingInterval + "]";
+  }
+
+  private SubscriptionSettings withDeadband(DeadbandKind kind, double deadband) {
+    if (deadband < 0) {
+      throw new IllegalArgumentException("deadband must not be negative.");
+    }
+    return new SubscriptionSettings(samplingInterval, queueSize, kind, deadband, publishingInterval);
+  }
+}
@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.Map;
+
+/**
+ * The values supplied to a {@link ConnectedProperty}, with primitive
+ * accessors for numeric and boolean suppliers. For use with
+ * {@link DoubleSupplyFilter}, {@link LongSupplyFilter} and
+ * {@link BooleanSupplyFilter}.
+ *
+ * <p>
+ * The primitive accessors unbox the supplied values without creating new
+ * objects, so arithmetic on them stays allocation-free.
+ */
+public interface SupplierValues {
+  /**
+   * Gets the value of a supplier.
+   *
+   * @param name The supplier's name.
+   *
+   * @return The supplied value.
+   *
+   * @throws IllegalArgumentException if there is no supplier with that name.
+   */
+  Object get(String name);
+
+  /**
+   * Gets the numeric value of a supplier as {@code double}.
+   *
+   * @param name The supplier's name.
+   *
+   * @return The supplied value.
+   *
+   * @throws IllegalArgumentException if there is no supplier with that name.
+   * @throws ClassCastException       if the value isn't a {@link Number}.
+   */
+  default double getAsDouble(String name) {
+    return ((Number) get(name)).doubleValue();
+  }
+
+  /**
+   * Gets the numeric value of a supplier as {@code long}.
+   *
+   * @param name The supplier's name.
+   *
+   * @return The supplied value.
+   *
+   * @throws IllegalArgumentException if there is no supplier with that name.
+   * @throws ClassCastException       if the value isn't a {@link Number}.
+   */
+  default long getAsLong(String name) {
+    return ((Number) get(name)).longValue();
+  }
+
+  /**
+   * Gets the boolean value of a supplier.
+   *
+   * @param name The supplier's name.
+   *
+   * @return The supplied value.
+   *
+   * @throws IllegalArgumentException if there is no supplier with that name.
+   * @throws ClassCastException       if the value isn't a {@link Boolean}.
+   */
+  default boolean getAsBoolean(String name) {
+    return (Boolean) get(name);
+  }
+
+  /**
+   * Wraps a map of supplier values.
+   *
+   * @param values The values by supplier name.
+   *
+   * @return A view of the map.
+   */
+  static SupplierValues of(Map<String, Object> values) {
+    if (values instanceof SupplierValues) {
+      return (SupplierValues) values;
+    }
+
+    return name -> {
+      Object value = values.get(name);
+      if (value == null && !values.containsKey(name)) {
+        throw new IllegalArgumentException("'" + name + "' is not a known PropertyValueSupplier.");
+      }
+      return value;
+    };
+  }
+}
@@ -15,6 +15,7 @@
 package com.festo.aas.p4m.connection;
 
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * A function which transforms supplier values to a single output value. For use
@@ -23,8 +24,109 @@ import java.util.Map;
  * <p>
  * This function receives a map of supplier names and the values supplied by
  * them. It should compute the result from these values and return it.
+ *
+ * <p>
+ * A {@link ConnectedProperty} with
+ * {@link ConnectedProperty#setMemoizeSupplyFilter(boolean) memoization} skips
+ * the filter when the values haven't changed, but only if the filter is pure,
+ * i.e. always returns the same result for the same values. Filters are assumed
+ * to be impure, because a filter depending on anything else, e.g. the current
+ * time or a counter, would silently return stale results. Pure filters opt in
+ * by overriding {@link #isPure()} or being wrapped with
+ * {@link #pure(SupplyFilter)}.
+ *
+ * <p>
+ * The map passed to a filter is a read-only view of the supplier values. It is
+ * reused for later reads, so it is only valid during the call and must not be
+ * kept. Filters which use the map as scratch space must override
+ * {@link #mutatesValues()} or be wrapped with {@link #mutating(SupplyFilter)}.
+ * They receive a mutable copy instead, which costs a {@link java.util.HashMap}
+ * per read.
  */
 @FunctionalInterface
 public interface SupplyFilter {
   Object filter(Map<String, Object> values);
+
+  /**
+   * Whether this filter always returns the same result for the same values.
+   *
+   * @return {@code false} unless overridden.
+   */
+  default boolean isPure() {
+    return false;
+  }
+
+  /**
+   * Whether this filter modifies the map passed to it.
+   *
+   * @return {@code false} unless overridden.
+   */
+  default boolean mutatesValues() {
+    return false;
+  }
+
+  /**
+   * Marks a filter as pure, so its result may be memoized.
+   *
+   * <h2>Example</h2>
+   *
+   * <pre>{@code
+   * property.setSupplyFilter(SupplyFilter.pure(values -> (Integer) values.get("a") + (Integer) values.get("b")));
+   * property.setMemoizeSupplyFilter(true);
+   * }</pre>
+   *
+   * @param filter The filter to wrap. It must return the same result for the
+   *               same values.
+   *
+   * @return A filter which delegates to {@code filter} and whose
+   *         {@link #isPure()} returns {@code true}.
+   */
+  static SupplyFilter pure(SupplyFilter filter) {
+    Objects.requireNonNull(filter);
+    return new SupplyFilter() {
+      @Override
+      public Object filter(Map<String, Object> values) {
+        return filter.filter(values);
+      }
+
+      @Override
+      public boolean isPure() {
+        return true;
+      }
+
+      @Override
+      public boolean mutatesValues() {
+        return filter.mutatesValues();
+      }
+    };
+  }
+
+  /**
+   * Marks a filter as modifying its input, so it is passed a mutable copy of
+   * the supplier values instead of the read-only view.
+   *
+   * @param filter The filter to wrap.
+   *
+   * @return A filter which delegates to {@code filter} and whose
+   *         {@link #mutatesValues()} returns {@code true}.
+   */
+  static SupplyFilter mutating(SupplyFilter filter) {
+    Objects.requireNonNull(filter);
+    return new SupplyFilter() {
+      @Override
+      public Object filter(Map<String, Object> values) {
+        return filter.filter(values);
+      }
+
+      @Override
+      public boolean isPure() {
+        return filter.isPure();
+      }
+
+      @Override
+      public boolean mutatesValues() {
+        return true;
+      }
+    };
+  }
 }
@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Instant;
+
+/**
+ * Describes a change of the value of an {@link OpcUaVariable} or a
+ * {@link ConnectedProperty}.
+ *
+ * <p>
+ * If a listener can't keep up, consecutive changes may be merged into a single
+ * event. Such an event reports the old value of the first and the new value of
+ * the last change.
+ */
+public final class ValueChangeEvent {
+  private final Object source;
+  private final Object oldValue;
+  private final Object newValue;
+  private final Instant timestamp;
+
+  ValueChangeEvent(Object source, Object oldValue, Object newValue, Instant timestamp) {
+    this.source = source;
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+    this.timestamp = timestamp;
+  }
+
+  /**
+   * Gets the object whose value changed.
+   *
+   * @return The {@link OpcUaVariable} or {@link ConnectedProperty}.
+   */
+  public Object getSource() {
+    return source;
+  }
+
+  /**
+   * Gets the value before the change.
+   *
+   * @return The previous value, or {@code null} if it wasn't known, e.g. for
+   *         the first value read after the listener was added.
+   */
+  public Object getOldValue() {
+    return oldValue;
+  }
+
+  /**
+   * Gets the value after the change.
+   *
+   * @return The new value.
+   */
+  public Object getNewValue() {
+    return newValue;
+  }
+
+  /**
+   * Gets the time at which the change was detected.
+   *
+   * @return The time of the change.
+   */
+  public Instant getTimestamp() {
+    return timestamp;
+  }
+
+  ValueChangeEvent mergeWith(ValueChangeEvent next) {
+    return new ValueChangeEvent(source, oldValue, next.newValue, next.timestamp);
+  }
+
+  @Override
+  public String toString() {
+    return "ValueChangeEvent [source=" + source + ", oldValue=" + oldValue + ", newValue=" + newValue
+        + ", timestamp=" + timestamp + "]";
+  }
+}
@@ -0,0 +1,30 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+/**
+ * Receives the changes of the value of an {@link OpcUaVariable} or a
+ * {@link ConnectedProperty}.
+ *
+ * <p>
+ * Changes are only detected when the value is read from its source or written,
+ * e.g. by {@link OpcUaVariable#getValue()}, a {@link PollScheduler} or a
+ * subscription. Each listener is called from one thread at a time, in the order
+ * of the changes.
+ */
+@FunctionalInterface
+public interface ValueChangeListener {
+  void valueChanged(ValueChangeEvent event);
+}
@@ -0,0 +1,172 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Detects value changes and delivers them to {@link ValueChangeListener}s.
+ *
+ * <p>
+ * Every listener has its own bounded queue and is called on its own executor,
+ * so a slow listener neither blocks the thread which detected the change nor
+ * other listeners. If the queue of a listener is full, its two oldest events
+ * are merged into one. The listener therefore always sees the latest value,
+ * but may miss intermediate ones.
+ */
+final class ValueChangeNotifier {
+  /**
+   * The default number of undelivered events per listener.
+   */
+  static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+  private static final Logger logger = LoggerFactory.getLogger(ValueChangeNotifier.class);
+  private static final Object UNKNOWN = new Object();
+
+  private final Object source;
+  private volatile Registration[] registrations = new Registration[0];
+  private Object lastValue = UNKNOWN;
+
+  ValueChangeNotifier(Object source) {
+    this.source = source;
+  }
+
+  synchronized void addListener(ValueChangeListener listener, Executor executor, int queueCapacity) {
+    Objects.requireNonNull(listener);
+    Objects.requireNonNull(executor);
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be positive.");
+    }
+
+    Registration[] newRegistrations = Arrays.copyOf(registrations, registrations.length + 1);
+    newRegistrations[registrations.length] = new Registration(listener, executor, queueCapacity);
+    registrations = newRegistrations;
+  }
+
+  synchronized boolean removeListener(ValueChangeListener listener) {
+    for (int i = 0; i < registrations.length; i++) {
+      if (registrations[i].listener == listener) {
+        Registration[] newRegistrations = new Registration[registrations.length - 1];
+        System.arraycopy(registrations, 0, newRegistrations, 0, i);
+        System.arraycopy(registrations, i + 1, newRegistrations, i, newRegistrations.length - i);
+        registrations = newRegistrations;
+        if (newRegistrations.length == 0) {
+          lastValue = UNKNOWN;
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reports the current value. Listeners are notified if it differs from the
+   * previously reported value. Costs nothing if there are no listeners.
+   */
+  void publish(Object value) {
+    if (registrations.length == 0) {
+      return;
+    }
+
+    ValueChangeEvent event;
+    Registration[] targets;
+    synchronized (this) {
+      if (lastValue != UNKNOWN && Objects.deepEquals(lastValue, value)) {
+        return;
+      }
+      event = new ValueChangeEvent(source, lastValue == UNKNOWN ? null : lastValue, value, Instant.now());
+      lastValue = value;
+      targets = registrations;
+      // Enqueue while holding the lock, so every listener sees the changes in order.
+      for (Registration registration : targets) {
+        registration.enqueue(event);
+      }
+    }
+
+    for (Registration registration : targets) {
+      registration.scheduleDelivery();
+    }
+  }
+
+  private static final class Registration {
+    private final ValueChangeListener listener;
+    private final Executor executor;
+    private final int queueCapacity;
+    private final ArrayDeque<ValueChangeEvent> queue = new ArrayDeque<>();
+    private boolean delivering;
+
+    private Registration(ValueChangeListener listener, Executor executor, int queueCapacity) {
+      this.listener = listener;
+      this.executor = executor;
+      this.queueCapacity = queueCapacity;
+    }
+
+    private synchronized void enqueue(ValueChangeEvent event) {
+      if (queue.size() == queueCapacity) {
+        ValueChangeEvent oldest = queue.pollFirst();
+        if (queue.isEmpty()) {
+          queue.addFirst(oldest.mergeWith(event));
+          return;
+        }
+        queue.addFirst(oldest.mergeWith(queue.pollFirst()));
+      }
+      queue.addLast(event);
+    }
+
+    private void scheduleDelivery() {
+      synchronized (this) {
+        if (delivering || queue.isEmpty()) {
+          return;
+        }
+        delivering = true;
+      }
+
+      try {
+        executor.execute(this::deliver);
+      } catch (RuntimeException e) {
+        logger.warn("Failed to schedule value change delivery.", e);
+        synchronized (this) {
+          delivering = false;
+        }
+      }
+    }
+
+    private void deliver() {
+      while (true) {
+        ValueChangeEvent event;
+        synchronized (this) {
+          event = queue.pollFirst();
+          if (event == null) {
+            delivering = false;
+            return;
+          }
+        }
+
+        try {
+          listener.valueChanged(event);
+        } catch (RuntimeException e) {
+          logger.warn("Value change listener failed.", e);
+        }
+      }
+    }
+  }
+}
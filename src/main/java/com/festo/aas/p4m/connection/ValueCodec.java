@@ -0,0 +1,379 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedByte;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedLong;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedShort;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.ULong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+
+/**
+ * Converts the values of an {@link OpcUaVariable} between the type used by the
+ * OPC UA client and the type exposed to BaSyx.
+ *
+ * <p>
+ * A codec is chosen once per data type, so reading or writing a value doesn't
+ * need to look at the data type again. The following conversions are
+ * supported:
+ * <ul>
+ * <li>Unsigned integers are exposed as the next larger signed type:
+ * {@link UnsignedByte} as {@link Short}, {@link UnsignedShort} as
+ * {@link Integer}, {@link UnsignedInteger} as {@link Long} and
+ * {@link UnsignedLong} as {@link BigInteger}. When writing, any integral value
+ * in range is accepted.</li>
+ * <li>Signed numbers accept values of a smaller type when writing, following
+ * Java's widening primitive conversions, e.g. an {@link Integer} for a
+ * {@link Long} or {@link Double} variable. Integral values written to a
+ * {@link Float} or {@link Double} variable must be exactly representable.</li>
+ * <li>Arrays of any supported type are converted element by element. When
+ * writing, collections and primitive arrays are accepted as well. Primitive
+ * component types are treated as their wrapper types, so an {@code int[]}
+ * variable is handled like an {@code Integer[]} one.</li>
+ * <li>All other types are passed through unchanged.</li>
+ * </ul>
+ */
+abstract class ValueCodec {
+  private static final Map<Class<?>, Integer> WIDENING_RANKS = new HashMap<>();
+  private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<>();
+
+  static {
+    WIDENING_RANKS.put(Byte.class, 1);
+    WIDENING_RANKS.put(Short.class, 2);
+    WIDENING_RANKS.put(Integer.class, 3);
+    WIDENING_RANKS.put(Long.class, 4);
+    WIDENING_RANKS.put(Float.class, 5);
+    WIDENING_RANKS.put(Double.class, 6);
+
+    WRAPPER_TYPES.put(boolean.class, Boolean.class);
+    WRAPPER_TYPES.put(byte.class, Byte.class);
+    WRAPPER_TYPES.put(char.class, Character.class);
+    WRAPPER_TYPES.put(short.class, Short.class);
+    WRAPPER_TYPES.put(int.class, Integer.class);
+    WRAPPER_TYPES.put(long.class, Long.class);
+    WRAPPER_TYPES.put(float.class, Float.class);
+    WRAPPER_TYPES.put(double.class, Double.class);
+  }
+
+  final Class<?> dataType;
+
+  private ValueCodec(Class<?> dataType) {
+    this.dataType = dataType;
+  }
+
+  /**
+   * Gets the codec for the given data type of an OPC UA variable.
+   *
+   * @param dataType The class of the values returned by the OPC UA client, see
+   *                 {@link org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient}.
+   */
+  static ValueCodec forType(Class<?> dataType) {
+    if (dataType.isPrimitive()) {
+      // Values are always boxed, so a primitive type would never match them.
+      return forType(WRAPPER_TYPES.get(dataType));
+    } else if (dataType.isArray()) {
+      return new ArrayCodec(dataType, forType(dataType.getComponentType()));
+    } else if (dataType == UnsignedByte.class) {
+      return new UnsignedCodec(dataType, Short.class, UByte.class, BigInteger.valueOf(UnsignedByte.MAX_VALUE),
+          value -> ((UnsignedByte) value).toShort(), value -> new UnsignedByte((UByte) value),
+          value -> new UnsignedByte(value.shortValue()), value -> ((UnsignedByte) value).getInternalValue());
+    } else if (dataType == UnsignedShort.class) {
+      return new UnsignedCodec(dataType, Integer.class, UShort.class, BigInteger.valueOf(UnsignedShort.MAX_VALUE),
+          value -> ((UnsignedShort) value).toInt(), value -> new UnsignedShort((UShort) value),
+          value -> new UnsignedShort(value.intValue()), value -> ((UnsignedShort) value).getInternalValue());
+    } else if (dataType == UnsignedInteger.class) {
+      return new UnsignedCodec(dataType, Long.class, UInteger.class, BigInteger.valueOf(UnsignedInteger.MAX_VALUE),
+          value -> ((UnsignedInteger) value).toLong(), value -> new UnsignedInteger((UInteger) value),
+          value -> new UnsignedInteger(value.longValue()), value -> ((UnsignedInteger) value).getInternalValue());
+    } else if (dataType == UnsignedLong.class) {
+      return new UnsignedCodec(dataType, BigInteger.class, ULong.class, UnsignedLong.MAX_VALUE,
+          value -> ((UnsignedLong) value).toBigInteger(), value -> new UnsignedLong((ULong) value),
+          UnsignedLong::new, value -> ((UnsignedLong) value).getInternalValue());
+    } else if (WIDENING_RANKS.containsKey(dataType)) {
+      return new NumberCodec(dataType, WIDENING_RANKS.get(dataType));
+    } else {
+      return new PassThroughCodec(dataType);
+    }
+  }
+
+  /**
+   * Converts a value received from the OPC UA client to the type exposed to
+   * BaSyx.
+   *
+   * @throws ProviderException if the value doesn't match the data type.
+   */
+  abstract Object decode(Object value) throws ProviderException;
+
+  /**
+   * Converts a value received from BaSyx to the type expected by the OPC UA
+   * client.
+   *
+   * @throws IllegalArgumentException if the value can't be converted to the
+   *                                  data type.
+   */
+  abstract Object encode(Object value);
+
+  /**
+   * Gets the class of the values returned by {@link #decode(Object)}.
+   */
+  Class<?> decodedType() {
+    return dataType;
+  }
+
+  /**
+   * Converts a value received from BaSyx to the type used inside an array
+   * written to the OPC UA client.
+   */
+  Object encodeElement(Object value) {
+    return encode(value);
+  }
+
+  /**
+   * Gets the class of the values returned by {@link #encodeElement(Object)}.
+   */
+  Class<?> encodedElementType() {
+    return dataType;
+  }
+
+  ProviderException decodeMismatch(Object value) {
+    return new ProviderException(String.format(
+        "Mismatch between configured type (%s) and type received from OPC UA server (%s)", dataType,
+        value == null ? null : value.getClass()));
+  }
+
+  IllegalArgumentException encodeMismatch(Object value) {
+    return new IllegalArgumentException(String.format(
+        "Mismatch between configured type (%s) and type of given value (%s)", dataType,
+        value == null ? null : value.getClass()));
+  }
+
+  private static final class PassThroughCodec extends ValueCodec {
+    private PassThroughCodec(Class<?> dataType) {
+      super(dataType);
+    }
+
+    @Override
+    Object decode(Object value) {
+      if (!dataType.isInstance(value)) {
+        throw decodeMismatch(value);
+      }
+      return value;
+    }
+
+    @Override
+    Object encode(Object value) {
+      if (!dataType.isInstance(value)) {
+        throw encodeMismatch(value);
+      }
+      return value;
+    }
+  }
+
+  private static final class NumberCodec extends ValueCodec {
+    private final int rank;
+
+    private NumberCodec(Class<?> dataType, int rank) {
+      super(dataType);
+      this.rank = rank;
+    }
+
+    @Override
+    Object decode(Object value) {
+      if (value == null || value.getClass() != dataType) {
+        throw decodeMismatch(value);
+      }
+      return value;
+    }
+
+    @Override
+    Object encode(Object value) {
+      if (value != null && value.getClass() == dataType) {
+        return value;
+      }
+
+      Integer sourceRank = value == null ? null : WIDENING_RANKS.get(value.getClass());
+      if (sourceRank == null || sourceRank >= rank) {
+        throw encodeMismatch(value);
+      }
+
+      Number number = (Number) value;
+      switch (rank) {
+        case 2:
+          return number.shortValue();
+        case 3:
+          return number.intValue();
+        case 4:
+          return number.longValue();
+        case 5:
+          return checkExact(number, number.floatValue());
+        default:
+          return checkExact(number, number.doubleValue());
+      }
+    }
+
+    /**
+     * Makes sure that converting an integral value to a floating point type
+     * didn't round it, which Java's widening conversions allow silently.
+     */
+    private Number checkExact(Number value, Number converted) {
+      if (value instanceof Float
+          || new BigDecimal(converted.doubleValue()).compareTo(BigDecimal.valueOf(value.longValue())) == 0) {
+        return converted;
+      }
+      throw new IllegalArgumentException(String.format("Value %s can't be represented exactly as %s.", value,
+          dataType));
+    }
+  }
+
+  private static final class UnsignedCodec extends ValueCodec {
+    private final Class<?> signedType;
+    private final Class<?> miloType;
+    private final BigInteger maxValue;
+    private final Function<Object, Object> toSigned;
+    private final Function<Object, Object> fromMilo;
+    private final Function<BigInteger, Object> fromInteger;
+    private final Function<Object, Object> toMilo;
+
+    private UnsignedCodec(Class<?> dataType, Class<?> signedType, Class<?> miloType, BigInteger maxValue,
+        Function<Object, Object> toSigned, Function<Object, Object> fromMilo, Function<BigInteger, Object> fromInteger,
+        Function<Object, Object> toMilo) {
+      super(dataType);
+      this.signedType = signedType;
+      this.miloType = miloType;
+      this.maxValue = maxValue;
+      this.toSigned = toSigned;
+      this.fromMilo = fromMilo;
+      this.fromInteger = fromInteger;
+      this.toMilo = toMilo;
+    }
+
+    @Override
+    Object decode(Object value) {
+      if (value != null && value.getClass() == dataType) {
+        return toSigned.apply(value);
+      } else if (value != null && value.getClass() == miloType) {
+        return toSigned.apply(fromMilo.apply(value));
+      }
+      throw decodeMismatch(value);
+    }
+
+    @Override
+    Object encode(Object value) {
+      if (value != null && value.getClass() == dataType) {
+        return value;
+      } else if (value != null && value.getClass() == miloType) {
+        return fromMilo.apply(value);
+      }
+
+      BigInteger integer;
+      if (value instanceof BigInteger) {
+        integer = (BigInteger) value;
+      } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+          || value instanceof Byte) {
+        integer = BigInteger.valueOf(((Number) value).longValue());
+      } else {
+        throw encodeMismatch(value);
+      }
+
+      if (integer.signum() < 0 || integer.compareTo(maxValue) > 0) {
+        throw new IllegalArgumentException(String.format("Value %s is out of range for %s.", value, dataType));
+      }
+      return fromInteger.apply(integer);
+    }
+
+    @Override
+    Class<?> decodedType() {
+      return signedType;
+    }
+
+    @Override
+    Object encodeElement(Object value) {
+      // BaSyx only maps scalar unsigned values to Milo, so arrays must contain Milo types.
+      return toMilo.apply(encode(value));
+    }
+
+    @Override
+    Class<?> encodedElementType() {
+      return miloType;
+    }
+  }
+
+  private static final class ArrayCodec extends ValueCodec {
+    private final ValueCodec component;
+
+    private ArrayCodec(Class<?> dataType, ValueCodec component) {
+      super(dataType);
+      this.component = component;
+    }
+
+    @Override
+    Object decode(Object value) {
+      if (value == null || !value.getClass().isArray()) {
+        throw decodeMismatch(value);
+      }
+
+      int length = Array.getLength(value);
+      Object decoded = Array.newInstance(component.decodedType(), length);
+      for (int i = 0; i < length; i++) {
+        Array.set(decoded, i, component.decode(Array.get(value, i)));
+      }
+      return decoded;
+    }
+
+    @Override
+    Object encode(Object value) {
+      if (value instanceof Collection) {
+        Collection<?> collection = (Collection<?>) value;
+        Object encoded = Array.newInstance(component.encodedElementType(), collection.size());
+        Iterator<?> iterator = collection.iterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+          Array.set(encoded, i, component.encodeElement(iterator.next()));
+        }
+        return encoded;
+      } else if (value != null && value.getClass().isArray()) {
+        int length = Array.getLength(value);
+        Object encoded = Array.newInstance(component.encodedElementType(), length);
+        for (int i = 0; i < length; i++) {
+          Array.set(encoded, i, component.encodeElement(Array.get(value, i)));
+        }
+        return encoded;
+      }
+      throw encodeMismatch(value);
+    }
+
+    @Override
+    Class<?> decodedType() {
+      return Array.newInstance(component.decodedType(), 0).getClass();
+    }
+
+    @Override
+    Class<?> encodedElementType() {
+      return Array.newInstance(component.encodedElementType(), 0).getClass();
+    }
+  }
+}
@@ -64,9 +64,27 @@ public class ValueDelegate<T> {
   protected final Map<String, Object> lambdaMap;
 
   protected ValueDelegate() {
+    this(true);
+  }
+
+  /**
+   * Creates a delegate, optionally without any handlers.
+   *
+   * <p>
+   * Subclasses which override {@link #setGetHandler(Supplier)} or
+   * {@link #setSetHandler(Consumer)} should pass {@code false} and install
+   * their own defaults, since their overrides would run before their fields
+   * are initialized.
+   *
+   * @param installDefaultHandlers Whether to install handlers which throw
+   *                               {@link UnsupportedOperationException}.
+   */
+  protected ValueDelegate(boolean installDefaultHandlers) {
     lambdaMap = new HashMap<>();
-    setGetHandler(defaultGetHandler);
-    setSetHandler(defaultSetHandler);
+    if (installDefaultHandlers) {
+      lambdaMap.put(VABLambdaHandler.VALUE_GET_SUFFIX, defaultGetHandler);
+      lambdaMap.put(VABLambdaHandler.VALUE_SET_SUFFIX, defaultSetHandler);
+    }
   }
 
   /**
@@ -113,9 +131,7 @@ public class ValueDelegate<T> {
    */
   public static ValueDelegate<Collection<ISubmodelElement>> installOn(
       SubmodelElementCollection submodelElementCollection) {
-    CollectionDelegate delegate = new CollectionDelegate();
-    submodelElementCollection.put(Property.VALUE, delegate.lambdaMap);
-    return delegate;
+    return CollectionDelegate.installOn(submodelElementCollection);
   }
 
   /**
@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+/**
+ * Decides how an {@link OpcUaVariable} updates its cache after a successful
+ * write.
+ */
+public enum WritePolicy {
+  /**
+   * The written value becomes the cached value. Subsequent reads return it
+   * without asking the server until the cache expires. This is the default.
+   */
+  WRITE_THROUGH,
+  /**
+   * The cached value is discarded, so the next read asks the server.
+   */
+  WRITE_INVALIDATE,
+  /**
+   * The value is read back from the server right after the write and cached.
+   * This reveals values which the server modified, e.g. by clamping them to a
+   * range. Batched writes are read back with one batched read per client.
+   */
+  WRITE_AND_READBACK
+}
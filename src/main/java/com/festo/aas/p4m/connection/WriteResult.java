@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+/**
+ * The outcome of writing a single node as part of a batched write.
+ *
+ * <p>
+ * Returned by {@link OpcUaClient#writeValues(java.util.Map)}. Each node in a
+ * batch is written independently, so some nodes may fail while others succeed.
+ */
+public final class WriteResult {
+  private final NodeId nodeId;
+  private final StatusCode statusCode;
+  private final Throwable cause;
+
+  WriteResult(NodeId nodeId, StatusCode statusCode) {
+    this(nodeId, statusCode, null);
+  }
+
+  WriteResult(NodeId nodeId, StatusCode statusCode, Throwable cause) {
+    this.nodeId = nodeId;
+    this.statusCode = statusCode;
+    this.cause = cause;
+  }
+
+  /**
+   * Gets the id of the node that was written.
+   *
+   * @return The node id.
+   */
+  public NodeId getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Whether the node was written successfully.
+   *
+   * @return {@code true} if the OPC UA status code is good.
+   */
+  public boolean isGood() {
+    return statusCode.isGood();
+  }
+
+  /**
+   * Gets the raw OPC UA status code returned by the server for this node.
+   *
+   * @return The status code as an unsigned 32 bit value.
+   */
+  public long getStatusCode() {
+    return statusCode.getValue();
+  }
+
+  /**
+   * Throws an exception if the node wasn't written successfully.
+   *
+   * @throws OpcUaException if the node could not be written. If the write
+   *                        failed with an exception rather than a status code,
+   *                        that exception is the cause.
+   */
+  public void check() {
+    if (!statusCode.isGood()) {
+      throw new OpcUaException("Writing node '" + nodeId + "' failed with status " + statusCode, cause);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "WriteResult [nodeId=" + nodeId + ", status=" + statusCode + "]";
+  }
+}
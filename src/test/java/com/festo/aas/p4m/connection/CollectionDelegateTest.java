@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.eclipse.basyx.submodel.metamodel.api.submodelelement.ISubmodelElement;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.SubmodelElementCollection;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.valuetype.ValueType;
+import org.eclipse.basyx.vab.modelprovider.lambda.VABLambdaHandler;
+import org.junit.jupiter.api.Test;
+
+class CollectionDelegateTest {
+  private final CollectionDelegate delegate = CollectionDelegate.installOn(new SubmodelElementCollection());
+
+  @Test
+  void heldElementsAreServedInInsertionOrder() {
+    delegate.setElements(elements("PartC", "PartA", "PartB"));
+    delegate.putElement(element("PartD"));
+    delegate.putElement(element("PartA"));
+
+    assertEquals(Arrays.asList("PartC", "PartA", "PartB", "PartD"), new ArrayList<>(read().keySet()));
+    assertEquals(Arrays.asList("PartC", "PartA", "PartB", "PartD"), new ArrayList<>(delegate.getElements().keySet()));
+  }
+
+  @Test
+  void setElementsReplacesTheElementsAtOnce() {
+    delegate.setElements(elements("PartA", "PartB"));
+    Map<String, ISubmodelElement> before = read();
+    Map<String, ISubmodelElement> view = delegate.getElements();
+
+    delegate.setElements(elements("PartC"));
+
+    assertEquals(Arrays.asList("PartA", "PartB"), new ArrayList<>(before.keySet()));
+    assertEquals(Arrays.asList("PartC"), new ArrayList<>(read().keySet()));
+    assertEquals(Arrays.asList("PartC"), new ArrayList<>(view.keySet()));
+  }
+
+  @Test
+  void readsNeverSeeAPartialReplacement() throws InterruptedException {
+    List<ISubmodelElement> first = elements("PartA", "PartB", "PartC");
+    List<ISubmodelElement> second = elements("PartX", "PartY");
+    delegate.setElements(first);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 10_000; i++) {
+        delegate.setElements(i % 2 == 0 ? second : first);
+      }
+      done.set(true);
+    });
+
+    writer.start();
+    while (!done.get()) {
+      List<String> keys = new ArrayList<>(read().keySet());
+      assertTrue(keys.equals(Arrays.asList("PartA", "PartB", "PartC")) || keys.equals(Arrays.asList("PartX", "PartY")),
+          keys.toString());
+    }
+    writer.join();
+  }
+
+  @Test
+  void removeElementKeepsTheOrderOfTheOthers() {
+    delegate.setElements(elements("PartA", "PartB", "PartC"));
+
+    assertEquals("PartB", delegate.removeElement("PartB").getIdShort());
+    assertNull(delegate.removeElement("PartB"));
+    assertEquals(Arrays.asList("PartA", "PartC"), new ArrayList<>(read().keySet()));
+  }
+
+  @Test
+  void setElementsRejectsDuplicateIdShorts() {
+    delegate.setElements(elements("PartA"));
+
+    assertThrows(IllegalStateException.class, () -> delegate.setElements(elements("PartB", "PartB")));
+    assertEquals(Arrays.asList("PartA"), new ArrayList<>(read().keySet()));
+  }
+
+  @Test
+  void pagesOfHeldElementsAreStable() {
+    delegate.setElements(elements("PartE", "PartD", "PartC", "PartB", "PartA"));
+
+    assertEquals(Arrays.asList("PartD", "PartC"), idShorts(delegate.getPage(1, 2)));
+    delegate.putElement(element("PartC"));
+    delegate.putElement(element("PartF"));
+    assertEquals(Arrays.asList("PartD", "PartC"), idShorts(delegate.getPage(1, 2)));
+    assertEquals(Arrays.asList("PartA", "PartF"), idShorts(delegate.getPage(4, 10)));
+  }
+
+  @Test
+  void pagesFollowTheOrderOfTheGetter() {
+    delegate.setGetHandler(() -> elements("PartZ", "PartY", "PartX"));
+
+    assertEquals(Arrays.asList("PartY", "PartX"), idShorts(delegate.getPage(1, 5)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void newDelegateRejectsReadsAndWrites() {
+    Consumer<Object> setter = (Consumer<Object>) delegate.lambdaMap.get(VABLambdaHandler.VALUE_SET_SUFFIX);
+
+    assertThrows(UnsupportedOperationException.class, this::read);
+    assertThrows(UnsupportedOperationException.class, () -> setter.accept(read()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, ISubmodelElement> read() {
+    return ((Supplier<Map<String, ISubmodelElement>>) delegate.lambdaMap.get(VABLambdaHandler.VALUE_GET_SUFFIX))
+        .get();
+  }
+
+  private static List<String> idShorts(Collection<ISubmodelElement> elements) {
+    return elements.stream().map(ISubmodelElement::getIdShort).collect(Collectors.toList());
+  }
+
+  private static List<ISubmodelElement> elements(String... idShorts) {
+    List<ISubmodelElement> elements = new ArrayList<>();
+    for (String idShort : idShorts) {
+      elements.add(element(idShort));
+    }
+    return elements;
+  }
+
+  private static ISubmodelElement element(String idShort) {
+    return new Property(idShort, ValueType.Int32);
+  }
+}
@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.junit.jupiter.api.Test;
+
+class ConnectedPropertyTest {
+  private final ConnectedProperty property = new ConnectedProperty();
+  private final CountDownLatch interrupted = new CountDownLatch(1);
+
+  @Test
+  void singleSupplierIsAbandonedAfterTheFetchTimeout() throws InterruptedException {
+    property.addPropertyValueSupplier("slow", this::block);
+    property.setFetchTimeout(Duration.ofMillis(50));
+
+    assertThrows(ProviderException.class, property::getValue);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void slowSuppliersAreInterruptedAfterTheFetchTimeout() throws InterruptedException {
+    property.addPropertyValueSupplier("fast", () -> 1);
+    property.addPropertyValueSupplier("slow", this::block);
+    property.setSupplyFilter(values -> values.get("fast"));
+    property.setFetchTimeout(Duration.ofMillis(50));
+
+    assertThrows(ProviderException.class, property::getValue);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void singleSupplierIsReadOnTheReadingThread() {
+    property.addPropertyValueSupplier("value", Thread::currentThread);
+
+    assertSame(Thread.currentThread(), property.getValue());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  void readsRunOnTheCallerAreInterruptedAfterTheFetchTimeout() throws InterruptedException {
+    property.addPropertyValueSupplier("fast", () -> 1);
+    property.addPropertyValueSupplier("slow", this::block);
+    property.setSupplyFilter(values -> values.get("fast"));
+    property.setFetchTimeout(Duration.ofMillis(50));
+    // Behaves like a saturated pool with CallerRunsPolicy.
+    property.setFetchExecutor(Runnable::run);
+
+    assertThrows(ProviderException.class, property::getValue);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  void suppliersAnsweringInTimeAreCombined() {
+    property.addPropertyValueSupplier("a", () -> 1);
+    property.addPropertyValueSupplier("b", () -> 2);
+    property.setSupplyFilter(values -> (Integer) values.get("a") + (Integer) values.get("b"));
+
+    assertEquals(3, property.getValue());
+  }
+
+  @Test
+  void memoizationSkipsPureFiltersWhileTheValuesDontChange() {
+    int[] value = { 1 };
+    int[] calls = { 0 };
+    property.addPropertyValueSupplier("a", () -> value[0]);
+    property.setSupplyFilter(SupplyFilter.pure(values -> {
+      calls[0]++;
+      return values.get("a");
+    }));
+    property.setMemoizeSupplyFilter(true);
+
+    assertEquals(1, property.getValue());
+    assertEquals(1, property.getValue());
+    assertEquals(1, calls[0]);
+
+    value[0] = 2;
+    assertEquals(2, property.getValue());
+    assertEquals(2, calls[0]);
+  }
+
+  @Test
+  void memoizationNeverSkipsFiltersNotMarkedAsPure() {
+    int[] calls = { 0 };
+    property.addPropertyValueSupplier("a", () -> 1);
+    property.setSupplyFilter(values -> ++calls[0]);
+    property.setMemoizeSupplyFilter(true);
+
+    assertEquals(1, property.getValue());
+    assertEquals(2, property.getValue());
+  }
+
+  @Test
+  void mutatingFiltersGetACopyOfTheValues() {
+    property.addPropertyValueSupplier("a", () -> 1);
+    property.addPropertyValueSupplier("b", () -> 2);
+    property.setSupplyFilter(SupplyFilter.mutating(values -> {
+      values.remove("a");
+      return values.size();
+    }));
+
+    assertEquals(1, property.getValue());
+    assertEquals(1, property.getValue());
+  }
+
+  @Test
+  void filtersGetAReadOnlyViewReusedByLaterReads() {
+    List<Map<String, Object>> views = new ArrayList<>();
+    property.addPropertyValueSupplier("a", () -> 1);
+    property.addPropertyValueSupplier("b", () -> 2);
+    property.setSupplyFilter(values -> {
+      views.add(values);
+      return values.get("a");
+    });
+
+    assertEquals(1, property.getValue());
+    assertEquals(1, property.getValue());
+    assertSame(views.get(0), views.get(1));
+    property.setSupplyFilter(values -> values.remove("a"));
+    assertThrows(UnsupportedOperationException.class, property::getValue);
+  }
+
+  @Test
+  void nestedReadsDontShareTheViewOfTheOuterRead() {
+    ConnectedProperty inner = new ConnectedProperty();
+    inner.addPropertyValueSupplier("c", () -> 3);
+    inner.addPropertyValueSupplier("d", () -> 4);
+    inner.setSupplyFilter(values -> (Integer) values.get("c") + (Integer) values.get("d"));
+    property.addPropertyValueSupplier("a", () -> 1);
+    property.addPropertyValueSupplier("b", () -> 2);
+    property.setSupplyFilter(values -> {
+      int sum = (Integer) inner.getValue();
+      return (Integer) values.get("a") + (Integer) values.get("b") + sum;
+    });
+    property.setFetchExecutor(Runnable::run);
+
+    assertEquals(10, property.getValue());
+  }
+
+  @Test
+  void writesWaitForLocksTakenForAWriteSpanningSeveralProperties() throws Exception {
+    ConnectedProperty other = new ConnectedProperty();
+    List<Object> applied = new CopyOnWriteArrayList<>();
+    property.addPropertyValueConsumer("value", applied::add);
+
+    Runnable unlock = ConnectedProperty.lockForWrite(Arrays.asList(other, property, other));
+    CompletableFuture<Void> write = CompletableFuture.runAsync(() -> property.setValue(1));
+    Thread.sleep(100);
+    assertTrue(applied.isEmpty());
+
+    unlock.run();
+    write.get(5, TimeUnit.SECONDS);
+    assertEquals(Collections.singletonList(1), applied);
+  }
+
+  private Object block() {
+    try {
+      new CountDownLatch(1).await();
+    } catch (InterruptedException e) {
+      interrupted.countDown();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,252 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.basyx.vab.protocol.opcua.connector.ClientConfiguration;
+import org.eclipse.basyx.vab.protocol.opcua.connector.IOpcUaClient;
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+
+/**
+ * An in-memory {@link IOpcUaClient} which records every request.
+ *
+ * <p>
+ * Reads capture the node's value when they start. While the client is
+ * {@link #pause() paused}, they only complete once it is {@link #resume()
+ * resumed}, which allows tests to interleave requests deterministically.
+ * Writes likewise only take effect once {@link #resumeWrites()} is called
+ * after {@link #pauseWrites()}.
+ */
+final class FakeOpcUaClient implements IOpcUaClient {
+  static final String ENDPOINT = "opc.tcp://fake:4840";
+  static final long FAILURE_STATUS = StatusCodes.Bad_NodeIdUnknown;
+
+  private final Map<NodeId, Object> values = new ConcurrentHashMap<>();
+  private final Set<NodeId> failingNodes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final Set<NodeId> failingWrites = Collections.newSetFromMap(new ConcurrentHashMap<>());
+  private final List<NodeId> reads = Collections.synchronizedList(new ArrayList<>());
+  private final List<NodeId> writes = Collections.synchronizedList(new ArrayList<>());
+  private volatile CompletableFuture<Void> gate = CompletableFuture.completedFuture(null);
+  private volatile CompletableFuture<Void> writeGate = CompletableFuture.completedFuture(null);
+  private volatile RuntimeException outage;
+  private volatile CompletableFuture<Void> outageEnd;
+  private final CompletableFuture<Void> outageHit = new CompletableFuture<>();
+
+  void set(NodeId nodeId, Object value) {
+    values.put(nodeId, value);
+  }
+
+  Object get(NodeId nodeId) {
+    return values.get(nodeId);
+  }
+
+  /**
+   * Makes all further requests for the node fail. Like the Milo based client,
+   * the failure is an {@link OpcUaException} caused by a {@link UaException}
+   * with status {@link #FAILURE_STATUS}.
+   */
+  void fail(NodeId nodeId) {
+    failingNodes.add(nodeId);
+  }
+
+  /**
+   * Makes all further writes of the node fail, while reads still succeed.
+   */
+  void failWrites(NodeId nodeId) {
+    failingWrites.add(nodeId);
+  }
+
+  void heal(NodeId nodeId) {
+    failingNodes.remove(nodeId);
+    failingWrites.remove(nodeId);
+  }
+
+  synchronized void pause() {
+    if (gate.isDone()) {
+      gate = new CompletableFuture<>();
+    }
+  }
+
+  synchronized void resume() {
+    gate.complete(null);
+  }
+
+  synchronized void pauseWrites() {
+    if (writeGate.isDone()) {
+      writeGate = new CompletableFuture<>();
+    }
+  }
+
+  synchronized void resumeWrites() {
+    writeGate.complete(null);
+  }
+
+  /**
+   * Makes all further reads throw {@code error} synchronously, as a client does
+   * whose connection is gone. Each read blocks until {@code end} completes.
+   */
+  void outage(RuntimeException error, CompletableFuture<Void> end) {
+    outageEnd = end;
+    outage = error;
+  }
+
+  /**
+   * Completes once the first read has run into an {@link #outage}.
+   */
+  CompletableFuture<Void> outageHit() {
+    return outageHit;
+  }
+
+  List<NodeId> getReads() {
+    synchronized (reads) {
+      return new ArrayList<>(reads);
+    }
+  }
+
+  List<NodeId> getWrites() {
+    synchronized (writes) {
+      return new ArrayList<>(writes);
+    }
+  }
+
+  int readCount(NodeId nodeId) {
+    return Collections.frequency(getReads(), nodeId);
+  }
+
+  int writeCount(NodeId nodeId) {
+    return Collections.frequency(getWrites(), nodeId);
+  }
+
+  @Override
+  public CompletableFuture<Object> readValueAsync(NodeId nodeId) {
+    reads.add(nodeId);
+    RuntimeException error = outage;
+    if (error != null) {
+      outageHit.complete(null);
+      outageEnd.join();
+      throw error;
+    }
+
+    boolean failing = failingNodes.contains(nodeId);
+    Object value = values.get(nodeId);
+    return gate.thenApply(v -> {
+      if (failing) {
+        throw new OpcUaException("Reading " + nodeId + " failed.", new UaException(FAILURE_STATUS));
+      }
+      return value;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> writeValueAsync(NodeId nodeId, Object value) {
+    writes.add(nodeId);
+    boolean failing = failingNodes.contains(nodeId) || failingWrites.contains(nodeId);
+    return writeGate.thenRun(() -> {
+      if (failing) {
+        throw new OpcUaException("Writing " + nodeId + " failed.", new UaException(FAILURE_STATUS));
+      }
+      values.put(nodeId, value);
+    });
+  }
+
+  @Override
+  public Object readValue(NodeId nodeId) {
+    return join(readValueAsync(nodeId));
+  }
+
+  @Override
+  public void writeValue(NodeId nodeId, Object value) {
+    join(writeValueAsync(nodeId, value));
+  }
+
+  @Override
+  public String getEndpointUrl() {
+    return ENDPOINT;
+  }
+
+  @Override
+  public boolean hasConnected() {
+    return true;
+  }
+
+  @Override
+  public ClientConfiguration getConfiguration() {
+    return null;
+  }
+
+  @Override
+  public void setConfiguration(ClientConfiguration configuration) {
+    // Nothing to configure.
+  }
+
+  @Override
+  public NodeId translateBrowsePathToNodeId(NodeId startNodeId, String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public NodeId translateBrowsePathToNodeId(String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<NodeId> translateBrowsePathToNodeIdAsync(NodeId startNodeId, String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<NodeId> translateBrowsePathToNodeIdAsync(String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<NodeId> translateBrowsePathToParentAndTargetNodeId(String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<NodeId>> translateBrowsePathToParentAndTargetNodeIdAsync(String browsePath) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<Object> invokeMethod(NodeId ownerId, NodeId methodId, Object... args) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public CompletableFuture<List<Object>> invokeMethodAsync(NodeId ownerId, NodeId methodId, Object... args) {
+    throw new UnsupportedOperationException();
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.junit.jupiter.api.Test;
+
+class OpcUaClientTest {
+  private static final NodeId A = new NodeId(1, "A");
+  private static final NodeId B = new NodeId(1, "B");
+  private static final NodeId C = new NodeId(1, "C");
+
+  private static final NodeId SERVER_STATE = new NodeId(Identifiers.Server_ServerStatus_State);
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final OpcUaClient client = new OpcUaClient(fake);
+
+  @Test
+  void readValuesKeepsTheOrderOfTheNodeIds() {
+    fake.set(A, 1);
+    fake.set(B, 2);
+    fake.set(C, 3);
+
+    List<ReadResult> results = client.readValues(Arrays.asList(C, A, B));
+
+    assertEquals(Arrays.asList(C, A, B), Arrays.asList(results.get(0).getNodeId(), results.get(1).getNodeId(),
+        results.get(2).getNodeId()));
+    assertEquals(Arrays.asList(3, 1, 2), Arrays.asList(results.get(0).getValue(), results.get(1).getValue(),
+        results.get(2).getValue()));
+  }
+
+  @Test
+  void readValuesReportsFailuresPerNode() {
+    fake.set(A, 1);
+    fake.fail(B);
+
+    List<ReadResult> results = client.readValues(Arrays.asList(A, B));
+
+    assertTrue(results.get(0).isGood());
+    assertFalse(results.get(1).isGood());
+    assertThrows(OpcUaException.class, () -> results.get(1).getValue());
+  }
+
+  @Test
+  void failedRequestsKeepTheServerStatusAndTheCause() {
+    fake.fail(A);
+
+    ReadResult read = client.readValues(Collections.singletonList(A)).get(0);
+    WriteResult write = client.writeValues(Collections.singletonMap(A, 1)).get(0);
+
+    assertEquals(FakeOpcUaClient.FAILURE_STATUS, read.getStatusCode());
+    assertEquals(FakeOpcUaClient.FAILURE_STATUS, write.getStatusCode());
+    OpcUaException readError = assertThrows(OpcUaException.class, read::getValue);
+    OpcUaException writeError = assertThrows(OpcUaException.class, write::check);
+    assertEquals(FakeOpcUaClient.FAILURE_STATUS, UaException.extractStatusCode(readError).get().getValue());
+    assertEquals(FakeOpcUaClient.FAILURE_STATUS, UaException.extractStatusCode(writeError).get().getValue());
+  }
+
+  @Test
+  void writeValuesKeepsTheOrderOfTheValuesAndReportsFailuresPerNode() {
+    fake.fail(B);
+    Map<NodeId, Object> values = new LinkedHashMap<>();
+    values.put(C, 3);
+    values.put(B, 2);
+    values.put(A, 1);
+
+    List<WriteResult> results = client.writeValues(values);
+
+    assertEquals(Arrays.asList(C, B, A), Arrays.asList(results.get(0).getNodeId(), results.get(1).getNodeId(),
+        results.get(2).getNodeId()));
+    assertTrue(results.get(0).isGood());
+    assertFalse(results.get(1).isGood());
+    assertEquals(3, fake.get(C));
+    assertEquals(1, fake.get(A));
+  }
+
+  @Test
+  void emptyBatchesSendNothing() {
+    assertTrue(client.readValues(Collections.emptyList()).isEmpty());
+    assertTrue(client.writeValues(Collections.emptyMap()).isEmpty());
+    assertTrue(fake.getReads().isEmpty());
+    assertTrue(fake.getWrites().isEmpty());
+  }
+
+  @Test
+  void partitionSplitsIntoOrderedBatchesOfAtMostTheBatchSize() {
+    List<Integer> items = Arrays.asList(1, 2, 3, 4, 5, 6, 7);
+
+    assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5, 6), Collections.singletonList(7)),
+        OpcUaClient.partition(items, 3));
+    assertEquals(Collections.singletonList(items), OpcUaClient.partition(items, 7));
+    assertTrue(OpcUaClient.partition(Collections.emptyList(), 3).isEmpty());
+  }
+
+  @Test
+  void setMaxNodesPerRequestRejectsNonPositiveLimits() {
+    assertThrows(IllegalArgumentException.class, () -> client.setMaxNodesPerRequest(0));
+  }
+
+  @Test
+  void requestsAvoidSessionsWhichFailTheirHealthCheck() throws InterruptedException {
+    FakeOpcUaClient failing = new FakeOpcUaClient();
+    FakeOpcUaClient healthy = new FakeOpcUaClient();
+    failing.fail(SERVER_STATE);
+    healthy.set(A, 1);
+    OpcUaClient pooled = new OpcUaClient(Arrays.asList(failing, healthy));
+
+    pooled.startHealthChecks(Duration.ofMillis(10));
+    try {
+      awaitHealthySessions(pooled, 1);
+      for (int i = 0; i < 5; i++) {
+        assertEquals(1, pooled.readValue(A));
+      }
+      assertEquals(0, failing.readCount(A));
+      assertEquals(5, healthy.readCount(A));
+      assertFalse(pooled.isSubscriptionSessionHealthy());
+
+      failing.heal(SERVER_STATE);
+      awaitHealthySessions(pooled, 2);
+      assertTrue(pooled.isSubscriptionSessionHealthy());
+    } finally {
+      pooled.close();
+    }
+  }
+
+  @Test
+  void stoppingHealthChecksMakesAllSessionsHealthy() throws InterruptedException {
+    FakeOpcUaClient failing = new FakeOpcUaClient();
+    failing.fail(SERVER_STATE);
+    OpcUaClient pooled = new OpcUaClient(Arrays.asList(failing, new FakeOpcUaClient()));
+    pooled.startHealthChecks(Duration.ofMillis(10));
+    awaitHealthySessions(pooled, 1);
+
+    pooled.stopHealthChecks();
+
+    assertEquals(2, pooled.getHealthySessionCount());
+  }
+
+  @Test
+  void closeRunsCloseListeners() {
+    boolean[] closed = new boolean[1];
+    client.addCloseListener(() -> closed[0] = true);
+
+    client.close();
+
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  void fullAggregatedBatchIsSentEarlyAndCancelsItsFlush() throws Exception {
+    fake.set(A, 1);
+    fake.set(B, 2);
+    client.setReadAggregationWindow(Duration.ofHours(1));
+    client.setMaxNodesPerRequest(2);
+    BlockingQueue<Runnable> scheduled = ((ScheduledThreadPoolExecutor) SharedExecutors.scheduler()).getQueue();
+    int scheduledBefore = scheduled.size();
+
+    CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> client.readValue(A));
+    while (fake.readCount(A) == 0 && scheduled.size() == scheduledBefore) {
+      Thread.sleep(1);
+    }
+
+    assertEquals(2, client.readValue(B));
+    assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    assertEquals(scheduledBefore, scheduled.size());
+  }
+
+  private static void awaitHealthySessions(OpcUaClient client, int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (client.getHealthySessionCount() != count && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, client.getHealthySessionCount());
+  }
+}
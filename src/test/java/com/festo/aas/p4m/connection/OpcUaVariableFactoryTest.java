@@ -0,0 +1,135 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class OpcUaVariableFactoryTest {
+  private static final NodeId FIRST = new NodeId(1, "First");
+  private static final NodeId SECOND = new NodeId(1, "Second");
+  private static final NodeId THIRD = new NodeId(1, "Third");
+
+  private final OpcUaClient client = new OpcUaClient(new FakeOpcUaClient());
+
+  @AfterEach
+  void resetFactory() {
+    OpcUaVariableFactory.setMaxSize(0);
+    client.close();
+  }
+
+  @Test
+  void returnsTheCachedVariable() {
+    OpcUaVariable variable = create(FIRST);
+
+    assertSame(variable, create(FIRST));
+  }
+
+  @Test
+  void rejectsADifferentDataType() {
+    create(FIRST);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> OpcUaVariableFactory.createIfNonexistent(client, FIRST, Double.class, Duration.ZERO));
+  }
+
+  @Test
+  void evictsTheLeastRecentlyRequestedVariables() {
+    OpcUaVariable first = create(FIRST);
+    OpcUaVariable second = create(SECOND);
+    OpcUaVariableFactory.setMaxSize(2);
+    create(FIRST);
+
+    OpcUaVariable third = create(THIRD);
+
+    List<OpcUaVariable> cached = OpcUaVariableFactory.getCached(client);
+    assertEquals(Arrays.asList(first, third), cached);
+    assertNotSame(second, create(SECOND));
+  }
+
+  @Test
+  void closingTheClientDropsItsVariablesAndListener() {
+    int listeners = client.getCloseListenerCount();
+    OpcUaVariable variable = create(FIRST);
+    create(SECOND);
+    assertEquals(listeners + 1, client.getCloseListenerCount());
+
+    client.close();
+
+    assertTrue(OpcUaVariableFactory.getCached(client).isEmpty());
+    assertEquals(listeners, client.getCloseListenerCount());
+    assertNotSame(variable, create(FIRST));
+    assertEquals(listeners + 1, client.getCloseListenerCount());
+  }
+
+  @Test
+  void evictedSubscribedVariablesAreUnsubscribed() {
+    SubscribedOpcUaVariable variable = subscribe(FIRST);
+    long generation = variable.getGeneration();
+    OpcUaVariableFactory.setMaxSize(1);
+
+    create(SECOND);
+
+    assertTrue(variable.getGeneration() > generation);
+  }
+
+  @Test
+  void droppedSubscribedVariablesAreUnsubscribed() {
+    SubscribedOpcUaVariable variable = subscribe(FIRST);
+    long generation = variable.getGeneration();
+
+    client.close();
+
+    assertTrue(variable.getGeneration() > generation);
+  }
+
+  @Test
+  void createsAndReturnsTypedVariables() {
+    LongOpcUaVariable variable = OpcUaVariableFactory.createLongIfNonexistent(client, FIRST, Integer.class,
+        CachePolicy.noCache());
+
+    assertSame(variable, create(FIRST));
+    assertSame(variable,
+        OpcUaVariableFactory.createLongIfNonexistent(client, FIRST, Integer.class, CachePolicy.noCache()));
+  }
+
+  @Test
+  void rejectsTypedRequestsForPlainVariables() {
+    create(FIRST);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> OpcUaVariableFactory.createLongIfNonexistent(client, FIRST, Integer.class, CachePolicy.noCache()));
+  }
+
+  private SubscribedOpcUaVariable subscribe(NodeId nodeId) {
+    return (SubscribedOpcUaVariable) OpcUaVariableFactory.createIfNonexistent(client, nodeId, Integer.class,
+        SubscriptionSettings.of(Duration.ofMillis(100)));
+  }
+
+  private OpcUaVariable create(NodeId nodeId) {
+    return OpcUaVariableFactory.createIfNonexistent(client, nodeId, Integer.class, Duration.ZERO);
+  }
+}
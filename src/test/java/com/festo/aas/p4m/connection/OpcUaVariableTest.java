@@ -0,0 +1,254 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.exception.OpcUaException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
+import org.junit.jupiter.api.Test;
+
+class OpcUaVariableTest {
+  private static final NodeId FIRST = new NodeId(1, "First");
+  private static final NodeId SECOND = new NodeId(1, "Second");
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final OpcUaClient client = new OpcUaClient(fake);
+
+  @Test
+  void getValuesReadsOnceAndCachesTheValues() {
+    fake.set(FIRST, 1);
+    fake.set(SECOND, 2);
+    OpcUaVariable first = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+    OpcUaVariable second = new OpcUaVariable(client, SECOND, Integer.class, Duration.ofMinutes(1));
+
+    assertEquals(Arrays.asList(1, 2), OpcUaVariable.getValues(Arrays.asList(first, second)));
+    assertEquals(1, first.getValue());
+    assertEquals(2, second.getValue());
+
+    assertEquals(1, fake.readCount(FIRST));
+    assertEquals(1, fake.readCount(SECOND));
+  }
+
+  @Test
+  void joinedReadsFailWithTheErrorOfTheirOwnClient() throws Exception {
+    FakeOpcUaClient otherFake = new FakeOpcUaClient();
+    OpcUaVariable first = new OpcUaVariable(client, FIRST, Integer.class);
+    OpcUaVariable second = new OpcUaVariable(new OpcUaClient(otherFake), SECOND, Integer.class);
+    OpcUaException firstError = new OpcUaException("First client failed.");
+    OpcUaException secondError = new OpcUaException("Second client failed.");
+    CompletableFuture<Void> secondOutageEnd = new CompletableFuture<>();
+    fake.outage(firstError, CompletableFuture.completedFuture(null));
+    otherFake.outage(secondError, secondOutageEnd);
+
+    CompletableFuture<Object> batch = CompletableFuture.supplyAsync(
+        () -> OpcUaVariable.getValues(Arrays.asList(first, second)));
+    otherFake.outageHit().get(5, TimeUnit.SECONDS);
+    CompletableFuture<Object> joined = CompletableFuture.supplyAsync(second::getValue);
+    // Give the second read time to join the batch's pending read.
+    Thread.sleep(100);
+    secondOutageEnd.complete(null);
+
+    Exception error = assertThrows(Exception.class, () -> joined.get(5, TimeUnit.SECONDS));
+    assertSame(secondError, error.getCause());
+    assertThrows(Exception.class, () -> batch.get(5, TimeUnit.SECONDS));
+    assertEquals(1, otherFake.readCount(SECOND));
+  }
+
+  @Test
+  void getValuesReadsFromAllClientsAtOnce() throws Exception {
+    FakeOpcUaClient otherFake = new FakeOpcUaClient();
+    fake.set(FIRST, 1);
+    otherFake.set(SECOND, 2);
+    OpcUaVariable first = new OpcUaVariable(client, FIRST, Integer.class);
+    OpcUaVariable second = new OpcUaVariable(new OpcUaClient(otherFake), SECOND, Integer.class);
+    fake.pause();
+    otherFake.pause();
+
+    CompletableFuture<List<Object>> values = CompletableFuture.supplyAsync(
+        () -> OpcUaVariable.getValues(Arrays.asList(first, second)));
+    awaitReads(1);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (otherFake.getReads().isEmpty() && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+
+    // Both reads were sent before either client answered.
+    assertEquals(1, otherFake.readCount(SECOND));
+    fake.resume();
+    otherFake.resume();
+    assertEquals(Arrays.asList(1, 2), values.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void listenersReceiveTheDecodedWrittenValue() {
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, UnsignedInteger.class, Duration.ofMinutes(1));
+    List<Object> published = new ArrayList<>();
+    variable.addValueChangeListener(event -> published.add(event.getNewValue()), Runnable::run, 16);
+
+    variable.applyValue(5L);
+
+    assertEquals(5L, ((UnsignedInteger) fake.get(FIRST)).toLong());
+    assertEquals(Collections.singletonList(5L), published);
+    assertEquals(5L, variable.getValue());
+    assertEquals(0, fake.readCount(FIRST));
+  }
+
+  @Test
+  void deduplicationComparesWithThePendingCoalescedWrite() throws Exception {
+    fake.set(FIRST, 1);
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+    variable.setWriteDeduplication(true);
+    variable.setWriteCoalescingWindow(Duration.ofMillis(50), e -> { });
+    variable.getValue();
+
+    variable.applyValue(2);
+    variable.applyValue(2);
+    // Equals the cached value, but must replace the pending write of 2.
+    variable.applyValue(1);
+
+    awaitWrites(1);
+    assertEquals(1, fake.get(FIRST));
+    assertEquals(1, variable.getValue());
+    assertEquals(2, variable.getSuppressedWriteCount());
+  }
+
+  @Test
+  void coalescedWritesWaitForThePreviousWrite() throws Exception {
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Integer.class);
+    variable.setWriteCoalescingWindow(Duration.ofMillis(10), e -> { });
+    fake.pauseWrites();
+
+    variable.applyValue(1);
+    awaitWrites(1);
+    variable.applyValue(2);
+    Thread.sleep(100);
+    variable.applyValue(3);
+    Thread.sleep(100);
+
+    assertEquals(1, fake.getWrites().size());
+    fake.resumeWrites();
+    awaitWrites(2);
+    assertEquals(3, fake.get(FIRST));
+  }
+
+  @Test
+  void deadbandSuppressesSmallChanges() {
+    fake.set(FIRST, 1.0);
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Double.class, Duration.ofMinutes(1));
+    variable.setWriteDeadband(0.5);
+    variable.getValue();
+
+    variable.applyValue(1.4);
+    assertEquals(0, fake.writeCount(FIRST));
+    assertEquals(1, variable.getSuppressedWriteCount());
+
+    variable.applyValue(1.6);
+    assertEquals(1, fake.writeCount(FIRST));
+    assertEquals(1.6, fake.get(FIRST));
+    assertEquals(1, variable.getSuppressedWriteCount());
+  }
+
+  @Test
+  void rejectedBatchesDontCountSuppressedWrites() {
+    fake.set(FIRST, 1);
+    OpcUaVariable first = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+    OpcUaVariable second = new OpcUaVariable(client, SECOND, Integer.class);
+    first.setWriteDeduplication(true);
+    first.getValue();
+    Map<OpcUaVariable, Object> values = new LinkedHashMap<>();
+    values.put(first, 1);
+    values.put(second, "not a number");
+
+    assertThrows(IllegalArgumentException.class, () -> OpcUaVariable.applyValues(values));
+    assertEquals(0, first.getSuppressedWriteCount());
+    assertEquals(0, fake.getWrites().size());
+  }
+
+  @Test
+  void failedCoalescedWritesAreReportedToTheHandler() throws Exception {
+    fake.fail(FIRST);
+    CompletableFuture<RuntimeException> failure = new CompletableFuture<>();
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Integer.class);
+    variable.setWriteCoalescingWindow(Duration.ofMillis(10), failure::complete);
+
+    variable.applyValue(3);
+
+    assertTrue(failure.get(5, TimeUnit.SECONDS) instanceof OpcUaException);
+  }
+
+  @Test
+  void readsStartedBeforeAWriteDontOverwriteTheWrittenValue() throws Exception {
+    fake.set(FIRST, 1);
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+    fake.pause();
+    CompletableFuture<Object> read = CompletableFuture.supplyAsync(variable::getValue);
+    awaitReads(1);
+
+    variable.applyValue(2);
+    fake.resume();
+
+    assertEquals(2, read.get(5, TimeUnit.SECONDS));
+    assertEquals(2, variable.getValue());
+    assertEquals(1, fake.readCount(FIRST));
+  }
+
+  @Test
+  void readsStartedBeforeAnInvalidatingWriteAreNotCached() throws Exception {
+    fake.set(FIRST, 1);
+    OpcUaVariable variable = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+    variable.setWritePolicy(WritePolicy.WRITE_INVALIDATE);
+    fake.pause();
+    CompletableFuture<Object> read = CompletableFuture.supplyAsync(variable::getValue);
+    awaitReads(1);
+
+    variable.applyValue(2);
+    fake.resume();
+    read.get(5, TimeUnit.SECONDS);
+
+    assertEquals(2, variable.getValue());
+    assertEquals(2, fake.readCount(FIRST));
+  }
+
+  private void awaitReads(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (fake.getReads().size() < count && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, fake.getReads().size());
+  }
+
+  private void awaitWrites(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (fake.getWrites().size() < count && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, fake.getWrites().size());
+  }
+}
@@ -0,0 +1,112 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PollSchedulerTest {
+  private static final NodeId FIRST = new NodeId(1, "First");
+  private static final NodeId SECOND = new NodeId(1, "Second");
+  private static final Duration INTERVAL = Duration.ofMillis(20);
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final OpcUaClient client = new OpcUaClient(fake);
+  private final OpcUaVariable first = new OpcUaVariable(client, FIRST, Integer.class, Duration.ofMinutes(1));
+  private final OpcUaVariable second = new OpcUaVariable(client, SECOND, Integer.class, Duration.ofMinutes(1));
+  private final PollScheduler scheduler = new PollScheduler();
+
+  PollSchedulerTest() {
+    fake.set(FIRST, 1);
+    fake.set(SECOND, 2);
+  }
+
+  @AfterEach
+  void closeScheduler() {
+    fake.resume();
+    scheduler.close();
+  }
+
+  @Test
+  void variablesOfTheSameClientAndIntervalArePolledTogether() throws InterruptedException {
+    scheduler.register(first, INTERVAL);
+    scheduler.register(second, INTERVAL);
+
+    assertEquals(1, scheduler.getGroupCount());
+    awaitCached(first);
+    awaitCached(second);
+    assertEquals(1, first.peekValue());
+    assertEquals(2, second.peekValue());
+
+    scheduler.register(second, INTERVAL.multipliedBy(2));
+    assertEquals(2, scheduler.getGroupCount());
+  }
+
+  @Test
+  void ticksAreSkippedWhileThePreviousPollIsRunning() throws InterruptedException {
+    fake.pause();
+    scheduler.register(first, INTERVAL);
+
+    Thread.sleep(10 * INTERVAL.toMillis());
+
+    assertEquals(1, fake.readCount(FIRST));
+    fake.resume();
+    awaitCached(first);
+  }
+
+  @Test
+  void unregisteringTheLastVariableStopsTheGroup() throws InterruptedException {
+    int listeners = client.getCloseListenerCount();
+    scheduler.register(first, INTERVAL);
+    scheduler.register(second, INTERVAL);
+    assertEquals(listeners + 1, client.getCloseListenerCount());
+
+    scheduler.unregister(first);
+    assertEquals(1, scheduler.getGroupCount());
+    scheduler.unregisterAll(client);
+
+    assertEquals(0, scheduler.getGroupCount());
+    assertEquals(listeners, client.getCloseListenerCount());
+    // A tick which was already running may still read once.
+    Thread.sleep(INTERVAL.toMillis());
+    int reads = fake.getReads().size();
+    Thread.sleep(5 * INTERVAL.toMillis());
+    assertEquals(reads, fake.getReads().size());
+  }
+
+  @Test
+  void closingTheClientStopsPollingIt() {
+    int listeners = client.getCloseListenerCount();
+    scheduler.register(first, INTERVAL);
+
+    client.close();
+
+    assertEquals(0, scheduler.getGroupCount());
+    assertEquals(listeners, client.getCloseListenerCount());
+  }
+
+  private static void awaitCached(OpcUaVariable variable) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (variable.peekValue() == OpcUaVariable.NOT_CACHED && System.nanoTime() - deadline < 0) {
+      Thread.sleep(10);
+    }
+  }
+}
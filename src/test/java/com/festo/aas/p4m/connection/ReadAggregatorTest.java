@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.junit.jupiter.api.Test;
+
+class ReadAggregatorTest {
+  private static final NodeId A = new NodeId(1, "A");
+  private static final NodeId B = new NodeId(1, "B");
+  private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(200);
+  private static final long NEVER = TimeUnit.HOURS.toNanos(1);
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final ReadAggregator aggregator = new ReadAggregator(new OpcUaClient(fake));
+
+  ReadAggregatorTest() {
+    fake.set(A, 1);
+    fake.set(B, 2);
+  }
+
+  @Test
+  void readsOfOneWindowAreSentTogetherWhenItEnds() throws Exception {
+    CompletableFuture<ReadResult> a = aggregator.read(A, WINDOW, 10);
+    CompletableFuture<ReadResult> b = aggregator.read(B, WINDOW, 10);
+
+    assertFalse(a.isDone());
+    assertTrue(fake.getReads().isEmpty());
+    assertEquals(1, a.get(5, TimeUnit.SECONDS).getValue());
+    assertEquals(2, b.get(5, TimeUnit.SECONDS).getValue());
+    assertEquals(Arrays.asList(A, B), fake.getReads());
+  }
+
+  @Test
+  void readsOfTheSameNodeShareOneResult() throws Exception {
+    CompletableFuture<ReadResult> first = aggregator.read(A, WINDOW, 10);
+    CompletableFuture<ReadResult> second = aggregator.read(A, WINDOW, 10);
+
+    assertSame(first, second);
+    assertEquals(1, first.get(5, TimeUnit.SECONDS).getValue());
+    assertEquals(1, fake.readCount(A));
+  }
+
+  @Test
+  void fullBatchIsSentWithoutWaitingForTheWindow() {
+    CompletableFuture<ReadResult> a = aggregator.read(A, NEVER, 2);
+    assertFalse(a.isDone());
+
+    CompletableFuture<ReadResult> b = aggregator.read(B, NEVER, 2);
+
+    assertEquals(1, a.join().getValue());
+    assertEquals(2, b.join().getValue());
+  }
+
+  @Test
+  void earlyFlushCancelsTheScheduledFlush() {
+    BlockingQueue<Runnable> scheduled = ((ScheduledThreadPoolExecutor) SharedExecutors.scheduler()).getQueue();
+    int scheduledBefore = scheduled.size();
+
+    aggregator.read(A, NEVER, 2);
+    assertEquals(scheduledBefore + 1, scheduled.size());
+    aggregator.read(B, NEVER, 2);
+
+    assertEquals(scheduledBefore, scheduled.size());
+  }
+}
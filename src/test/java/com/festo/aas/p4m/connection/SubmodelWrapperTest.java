@@ -0,0 +1,202 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.basyx.aas.metamodel.map.descriptor.CustomId;
+import org.eclipse.basyx.submodel.metamodel.map.Submodel;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.SubmodelElementCollection;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.Property;
+import org.eclipse.basyx.submodel.metamodel.map.submodelelement.dataelement.property.valuetype.ValueType;
+import org.eclipse.basyx.submodel.restapi.SubmodelProvider;
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.exception.provider.ResourceNotFoundException;
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.junit.jupiter.api.Test;
+
+class SubmodelWrapperTest {
+  private static final NodeId FIRST = new NodeId(1, "First");
+  private static final NodeId SECOND = new NodeId(1, "Second");
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final OpcUaClient client = new OpcUaClient(fake);
+  private final Submodel submodel = new Submodel("Machine", new CustomId("urn:test:machine"));
+  private final SubmodelWrapper wrapper = new SubmodelWrapper(submodel);
+
+  SubmodelWrapperTest() {
+    fake.set(FIRST, 1);
+    fake.set(SECOND, 2);
+    submodel.addSubmodelElement(connect("First", FIRST));
+    submodel.addSubmodelElement(connect("Second", SECOND));
+  }
+
+  @Test
+  void snapshotReadsEveryVariableOnce() {
+    Map<String, Object> values = wrapper.snapshot();
+
+    assertEquals(1, values.get("First"));
+    assertEquals(2, values.get("Second"));
+    assertEquals(1, fake.readCount(FIRST));
+    assertEquals(1, fake.readCount(SECOND));
+  }
+
+  @Test
+  void consistentSnapshotBypassesTheCache() {
+    NodeId cachedNode = new NodeId(1, "Cached");
+    fake.set(cachedNode, 3);
+    submodel.addSubmodelElement(connect("Cached", new OpcUaVariable(client, cachedNode, Integer.class,
+        Duration.ofMinutes(1))));
+    wrapper.snapshot();
+    fake.set(cachedNode, 4);
+
+    assertEquals(3, wrapper.snapshot().get("Cached"));
+    assertEquals(4, wrapper.snapshot(true).get("Cached"));
+    assertEquals(2, fake.readCount(cachedNode));
+    assertEquals(4, wrapper.getValues(Collections.singletonList(new String[] {"Cached"})).get("Cached"));
+  }
+
+  @Test
+  void serializingWithPrefetchedValuesUsesThePrefetchedValues() {
+    SubmodelProvider provider = new SubmodelProvider(submodel);
+
+    Object values = wrapper.withPrefetchedValues(() -> {
+      // Changes after the prefetch must not be visible.
+      fake.set(FIRST, 10);
+      return provider.getValue("/submodel/values");
+    });
+
+    assertEquals(1, ((Map<?, ?>) values).get("First"));
+    assertEquals(1, fake.readCount(FIRST));
+    assertEquals(1, fake.readCount(SECOND));
+    assertEquals(10, wrapper.getValue("First"));
+  }
+
+  @Test
+  void failedWritesOnlyAffectTheirElement() {
+    fake.failWrites(SECOND);
+
+    Map<String, ElementWriteResult> results = wrapper.setValues(values(5, 6));
+
+    assertTrue(results.get("First").isGood());
+    assertFalse(results.get("Second").isGood());
+    assertFalse(results.get("First").isRolledBack());
+    assertEquals(5, fake.get(FIRST));
+    assertEquals(2, fake.get(SECOND));
+  }
+
+  @Test
+  void allOrNothingRollsBackToTheValuesOnTheServer() {
+    NodeId cachedNode = new NodeId(1, "Cached");
+    fake.set(cachedNode, 3);
+    submodel.addSubmodelElement(connect("Cached", new OpcUaVariable(client, cachedNode, Integer.class,
+        Duration.ofMinutes(1))));
+    wrapper.getValue("Cached");
+    // Changed by someone else, so the cached value is outdated.
+    fake.set(cachedNode, 4);
+    fake.failWrites(SECOND);
+    Map<String, Object> values = values(5, 6);
+    values.put("Cached", 7);
+
+    Map<String, ElementWriteResult> results = wrapper.setValues(values, true);
+
+    assertTrue(results.get("First").isRolledBack());
+    assertTrue(results.get("Cached").isRolledBack());
+    assertFalse(results.get("Second").isRolledBack());
+    assertThrows(ProviderException.class, () -> results.get("First").check());
+    assertEquals(1, fake.get(FIRST));
+    assertEquals(2, fake.get(SECOND));
+    assertEquals(4, fake.get(cachedNode));
+  }
+
+  @Test
+  void allOrNothingWritesEverythingIfNothingFails() {
+    Map<String, ElementWriteResult> results = wrapper.setValues(values(5, 6), true);
+
+    assertTrue(results.values().stream().allMatch(ElementWriteResult::isGood));
+    assertEquals(5, fake.get(FIRST));
+    assertEquals(6, fake.get(SECOND));
+  }
+
+  @Test
+  void handlesReadAndWriteStaticElements() {
+    SubmodelElementCollection drive = new SubmodelElementCollection("Drive");
+    drive.addSubmodelElement(new Property("Speed", 1.5));
+    submodel.addSubmodelElement(drive);
+
+    ElementHandle speed = wrapper.handle("Drive", "Speed");
+    speed.set(2.5);
+
+    assertEquals(2.5, speed.get());
+    assertEquals(2.5, wrapper.getValue("Drive", "Speed"));
+    assertArrayEquals(new String[] {"Drive", "Speed"}, speed.getIdShorts());
+  }
+
+  @Test
+  void handlesReadAndWriteDynamicElements() {
+    ElementHandle first = wrapper.handle("First");
+
+    assertEquals(1, first.get());
+    first.set(5);
+
+    assertEquals(5, fake.get(FIRST));
+    assertEquals(1, fake.readCount(FIRST));
+    assertEquals(1, fake.writeCount(FIRST));
+  }
+
+  @Test
+  void handlesPickUpGettersInstalledAfterTheirCreation() {
+    Property speed = new Property("Speed", 1.5);
+    submodel.addSubmodelElement(speed);
+    ElementHandle handle = wrapper.handle("Speed");
+
+    ValueDelegate<Double> delegate = ValueDelegate.installOn(speed);
+    delegate.setGetHandler(() -> 3.5);
+
+    assertEquals(3.5, handle.get());
+  }
+
+  @Test
+  void handlesCanOnlyBeCreatedForExistingElements() {
+    assertThrows(ResourceNotFoundException.class, () -> wrapper.handle("Missing"));
+  }
+
+  private static Map<String, Object> values(int first, int second) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("First", first);
+    values.put("Second", second);
+    return values;
+  }
+
+  private ConnectedProperty connect(String idShort, NodeId nodeId) {
+    return connect(idShort, new OpcUaVariable(client, nodeId, Integer.class));
+  }
+
+  private static ConnectedProperty connect(String idShort, OpcUaVariable variable) {
+    ConnectedProperty property = new ConnectedProperty(idShort, ValueType.Int32);
+    property.addPropertyValueSupplier("value", variable);
+    property.addPropertyValueConsumer("value", variable);
+    return property;
+  }
+}
@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.basyx.vab.protocol.opcua.types.NodeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.junit.jupiter.api.Test;
+
+class SubscribedOpcUaVariableTest {
+  private static final NodeId NODE = new NodeId(1, "Value");
+
+  private final FakeOpcUaClient fake = new FakeOpcUaClient();
+  private final OpcUaClient client = new OpcUaClient(fake);
+  private final SubscribedOpcUaVariable variable = new SubscribedOpcUaVariable(client, NODE, Integer.class,
+      SubscriptionSettings.of(Duration.ofMillis(100)));
+
+  @Test
+  void failedSubscriptionFallsBackToReadsAndBacksOff() {
+    fake.set(NODE, 7);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(7, variable.getValue());
+    }
+
+    // The fake client doesn't support subscriptions. Only the first read may try.
+    assertEquals(1, variable.getFailedAttempts());
+    assertEquals(10, fake.readCount(NODE));
+    assertFalse(variable.isLive());
+  }
+
+  @Test
+  void explicitSubscribeIgnoresTheBackoff() {
+    fake.set(NODE, 7);
+    variable.getValue();
+
+    variable.subscribe();
+
+    assertEquals(2, variable.getFailedAttempts());
+  }
+
+  @Test
+  void reportsOfTheCurrentAttemptMakeTheVariableLive() {
+    variable.onValueReported(variable.getGeneration(), new ReadResult(NODE, 5, StatusCode.GOOD));
+
+    assertTrue(variable.isLive());
+    assertEquals(5, variable.getValue());
+    assertEquals(0, fake.readCount(NODE));
+  }
+
+  @Test
+  void readsFallBackWhileTheSubscriptionSessionIsUnhealthy() throws InterruptedException {
+    FakeOpcUaClient first = new FakeOpcUaClient();
+    FakeOpcUaClient second = new FakeOpcUaClient();
+    first.fail(new NodeId(Identifiers.Server_ServerStatus_State));
+    second.set(NODE, 7);
+    OpcUaClient pooled = new OpcUaClient(Arrays.asList(first, second));
+    SubscribedOpcUaVariable pooledVariable = new SubscribedOpcUaVariable(pooled, NODE, Integer.class,
+        SubscriptionSettings.of(Duration.ofMillis(100)));
+    pooledVariable.onValueReported(pooledVariable.getGeneration(), new ReadResult(NODE, 5, StatusCode.GOOD));
+    assertEquals(5, pooledVariable.getValue());
+
+    pooled.startHealthChecks(Duration.ofMillis(10));
+    try {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (pooled.isSubscriptionSessionHealthy() && System.nanoTime() - deadline < 0) {
+        Thread.sleep(10);
+      }
+
+      assertEquals(7, pooledVariable.getValue());
+      assertEquals(1, second.readCount(NODE));
+    } finally {
+      pooled.close();
+    }
+  }
+
+  @Test
+  void reportsArrivingAfterUnsubscribeAreIgnored() {
+    long attempt = variable.getGeneration();
+    variable.unsubscribe();
+
+    variable.onValueReported(attempt, new ReadResult(NODE, 5, StatusCode.GOOD));
+
+    assertFalse(variable.isLive());
+  }
+}
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Papyrus4Manufacturing helpers
+ * %%
+ * Copyright (C) 2021 - 2022 Festo Didactic SE
+ * %%
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * #L%
+ */
+
+package com.festo.aas.p4m.connection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.eclipse.basyx.vab.exception.provider.ProviderException;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedInteger;
+import org.eclipse.basyx.vab.protocol.opcua.types.UnsignedLong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.junit.jupiter.api.Test;
+
+class ValueCodecTest {
+  @Test
+  void unsignedValuesAreDecodedAsTheNextLargerSignedType() {
+    ValueCodec codec = ValueCodec.forType(UnsignedInteger.class);
+
+    assertEquals(4294967295L, codec.decode(new UnsignedInteger(4294967295L)));
+    assertEquals(7L, codec.decode(UInteger.valueOf(7)));
+    assertEquals(new BigInteger("18446744073709551615"),
+        ValueCodec.forType(UnsignedLong.class).decode(new UnsignedLong(UnsignedLong.MAX_VALUE)));
+  }
+
+  @Test
+  void unsignedValuesAreRangeCheckedWhenEncoded() {
+    ValueCodec codec = ValueCodec.forType(UnsignedInteger.class);
+
+    assertEquals(5L, ((UnsignedInteger) codec.encode(5)).toLong());
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(-1));
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(4294967296L));
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(1.0));
+  }
+
+  @Test
+  void numbersAcceptWideningConversionsOnly() {
+    ValueCodec codec = ValueCodec.forType(Long.class);
+
+    assertEquals(3L, codec.encode((byte) 3));
+    assertEquals(3L, codec.encode(3));
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(3.0));
+    assertThrows(ProviderException.class, () -> codec.decode(3));
+  }
+
+  @Test
+  void integralValuesMustBeExactForFloatingPointTypes() {
+    ValueCodec floatCodec = ValueCodec.forType(Float.class);
+    ValueCodec doubleCodec = ValueCodec.forType(Double.class);
+
+    assertEquals(16777216f, floatCodec.encode(16777216));
+    assertThrows(IllegalArgumentException.class, () -> floatCodec.encode(16777217));
+    assertThrows(IllegalArgumentException.class, () -> floatCodec.encode(Long.MAX_VALUE));
+    assertEquals(9007199254740992.0, doubleCodec.encode(9007199254740992L));
+    assertThrows(IllegalArgumentException.class, () -> doubleCodec.encode(9007199254740993L));
+    assertEquals(1.5, doubleCodec.encode(1.5f));
+  }
+
+  @Test
+  void arraysWithPrimitiveComponentTypesUseTheWrapperType() {
+    ValueCodec codec = ValueCodec.forType(int[].class);
+
+    assertArrayEquals(new Integer[] { 1, 2 }, (Object[]) codec.decode(new Integer[] { 1, 2 }));
+    assertArrayEquals(new Integer[] { 1, 2 }, (Object[]) codec.encode(new int[] { 1, 2 }));
+    assertArrayEquals(new Integer[] { 1, 2 }, (Object[]) codec.encode(Arrays.asList(1, 2)));
+    assertThrows(ProviderException.class, () -> codec.decode(new String[] { "1" }));
+  }
+
+  @Test
+  void unsignedArraysAreEncodedWithMiloElements() {
+    ValueCodec codec = ValueCodec.forType(UnsignedInteger[].class);
+
+    assertArrayEquals(new Long[] { 1L, 2L }, (Object[]) codec.decode(new UInteger[] { UInteger.valueOf(1),
+        UInteger.valueOf(2) }));
+    assertArrayEquals(new UInteger[] { UInteger.valueOf(1), UInteger.valueOf(2) },
+        (Object[]) codec.encode(new int[] { 1, 2 }));
+  }
+
+  @Test
+  void otherTypesArePassedThroughUnchanged() {
+    ValueCodec codec = ValueCodec.forType(String.class);
+
+    assertEquals("text", codec.decode("text"));
+    assertEquals("text", codec.encode("text"));
+    assertThrows(IllegalArgumentException.class, () -> codec.encode(1));
+  }
+}